@@ -2,7 +2,13 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.Bookmark;
 import com.example.pafbackend.repositories.BookmarkRepository;
+import com.example.pafbackend.services.TrendingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +25,12 @@ public class BookmarkController {
     @Autowired
     private BookmarkRepository bookmarkRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TrendingService trendingService;
+
     // Get all user bookmarks
     @GetMapping("/{userId}")
     public ResponseEntity<List<Bookmark>> getUserBookmarks(@PathVariable String userId) {
@@ -50,20 +62,37 @@ public class BookmarkController {
         
         bookmark.setCreatedAt(new Date());
         Bookmark savedBookmark = bookmarkRepository.save(bookmark);
+        trendingService.bookmarkAdded(savedBookmark);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedBookmark);
     }
 
-    // Update a bookmark
-    @PutMapping("/{id}")
-    public ResponseEntity<Bookmark> updateBookmark(@PathVariable String id, @RequestBody Bookmark bookmarkDetails) {
-        return bookmarkRepository.findById(id)
-                .map(bookmark -> {
-                    bookmark.setTitle(bookmarkDetails.getTitle());
-                    bookmark.setNote(bookmarkDetails.getNote());
-                    bookmark.setTags(bookmarkDetails.getTags());
-                    return ResponseEntity.ok(bookmarkRepository.save(bookmark));
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    // Update a bookmark with a single $set of only the fields present, matched on id and owner
+    @RequestMapping(value = "/{id}", method = {RequestMethod.PUT, RequestMethod.PATCH})
+    public ResponseEntity<Bookmark> updateBookmark(@PathVariable String id, @RequestBody Bookmark bookmarkDetails,
+                                                   @RequestParam String userId) {
+        Update update = new Update();
+        if (bookmarkDetails.getTitle() != null) {
+            update.set("title", bookmarkDetails.getTitle());
+        }
+        if (bookmarkDetails.getNote() != null) {
+            update.set("note", bookmarkDetails.getNote());
+        }
+        if (bookmarkDetails.getTags() != null) {
+            update.set("tags", bookmarkDetails.getTags());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Bookmark updated = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(id).and("userId").is(userId)), update,
+                FindAndModifyOptions.options().returnNew(true), Bookmark.class);
+        if (updated == null) {
+            return bookmarkRepository.existsById(id)
+                    ? ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+                    : ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(updated);
     }
 
     // Delete a bookmark by id
@@ -72,6 +101,7 @@ public class BookmarkController {
         return bookmarkRepository.findById(id)
                 .map(bookmark -> {
                     bookmarkRepository.delete(bookmark);
+                    trendingService.bookmarkRemoved(bookmark);
                     return ResponseEntity.ok().<Void>build();
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -87,6 +117,7 @@ public class BookmarkController {
         
         return bookmark.map(b -> {
             bookmarkRepository.delete(b);
+            trendingService.bookmarkRemoved(b);
             return ResponseEntity.ok().<Void>build();
         }).orElseGet(() -> ResponseEntity.notFound().build());
     }
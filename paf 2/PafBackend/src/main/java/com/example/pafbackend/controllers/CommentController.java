@@ -1,14 +1,17 @@
 package com.example.pafbackend.controllers;
 
+import com.example.pafbackend.dto.CommentPage;
 import com.example.pafbackend.models.Comment;
 import com.example.pafbackend.repositories.CommentRepository;
 import com.example.pafbackend.repositories.PostRepository;
 import com.example.pafbackend.repositories.UserRepository;
+import com.example.pafbackend.services.CommentService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/comments")
@@ -18,11 +21,32 @@ public class CommentController {
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final CommentService commentService;
 
-    public CommentController(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository) {
+    @Value("${comments.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${comments.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${comments.preview.per-post:3}")
+    private int previewPerPost;
+
+    @Value("${comments.preview.max-posts:100}")
+    private int maxPreviewPosts;
+
+    @Value("${comments.thread.max-depth:32}")
+    private int maxThreadDepth;
+
+    @Value("${comments.thread.max-size:500}")
+    private int maxThreadSize;
+
+    public CommentController(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository,
+                             CommentService commentService) {
         this.commentRepository = commentRepository;
         this.postRepository = postRepository;
         this.userRepository = userRepository;
+        this.commentService = commentService;
     }
 
     // Create comment
@@ -35,41 +59,103 @@ public class CommentController {
             return ResponseEntity.notFound().build();
         }
         comment.setPostId(postId);
-        return ResponseEntity.ok(commentRepository.save(comment));
+        // Timestamp, id and thread fields are set server-side; ordering and paging depend on them
+        return ResponseEntity.ok(commentService.create(comment));
     }
 
-    // Get all comments for a post
+    // Reply to a comment; the reply belongs to the same post, one level deeper
+    @PostMapping("/{commentId}/replies")
+    public ResponseEntity<Comment> replyToComment(@PathVariable String commentId, @RequestBody Comment reply) {
+        Comment parent = commentService.find(commentId);
+        if (parent == null || !userRepository.existsById(reply.getUserId())) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(commentService.reply(parent, reply));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Get all comments for a post, replies included
     @GetMapping("/post/{postId}")
     public ResponseEntity<List<Comment>> getCommentsByPost(@PathVariable String postId) {
         if (!postRepository.existsById(postId)) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(commentRepository.findByPostId(postId));
+        return ResponseEntity.ok(commentRepository.findByPostIdOrderByTimestampAscIdAsc(postId));
+    }
+
+    // A page of top-level comments, oldest first: the latest ones by default, ?before= for older and ?after= for newer.
+    // Replies are not included; each comment's replyCount says whether there are any to expand.
+    @GetMapping("/post/{postId}/page")
+    public ResponseEntity<CommentPage> getCommentPage(@PathVariable String postId,
+                                                      @RequestParam(required = false) String before,
+                                                      @RequestParam(required = false) String after,
+                                                      @RequestParam(required = false) Integer limit) {
+        return findPage(postId, null, before, after, limit);
+    }
+
+    // A page of the direct replies to a comment, paged like the top-level comments
+    @GetMapping("/{commentId}/replies")
+    public ResponseEntity<CommentPage> getReplies(@PathVariable String commentId,
+                                                  @RequestParam(required = false) String before,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(required = false) Integer limit) {
+        Comment parent = commentService.find(commentId);
+        if (parent == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return findPage(parent.getPostId(), commentId, before, after, limit);
+    }
+
+    private ResponseEntity<CommentPage> findPage(String postId, String parentId, String before, String after,
+                                                 Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(commentService.page(postId, parentId, before, after, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // The comment and its sub-thread in depth-first order, down to ?depth= levels below it
+    @GetMapping("/{commentId}/thread")
+    public ResponseEntity<List<Comment>> getThread(@PathVariable String commentId,
+                                                   @RequestParam(required = false) Integer depth) {
+        Comment root = commentService.find(commentId);
+        if (root == null) {
+            return ResponseEntity.notFound().build();
+        }
+        int levels = depth == null ? maxThreadDepth : Math.max(0, Math.min(depth, maxThreadDepth));
+        return ResponseEntity.ok(commentService.thread(root, levels, maxThreadSize));
+    }
+
+    // postId -> its latest comments, for the previews on feed cards
+    @GetMapping("/latest")
+    public ResponseEntity<Map<String, List<Comment>>> getLatestComments(@RequestParam List<String> postIds) {
+        if (postIds.size() > maxPreviewPosts) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(commentService.latestByPost(postIds, previewPerPost));
     }
 
     // Update a comment
     @PutMapping("/{id}")
     public ResponseEntity<Comment> updateComment(@PathVariable String id, @RequestBody Comment updatedComment) {
-        Optional<Comment> existingComment = commentRepository.findById(id);
-
-        if (existingComment.isEmpty()) {
+        Comment saved = commentService.updateText(id, updatedComment.getCommentText());
+        if (saved == null) {
             return ResponseEntity.notFound().build();
         }
-
-        Comment comment = existingComment.get();
-        comment.setCommentText(updatedComment.getCommentText());
-        Comment saved = commentRepository.save(comment);
         return ResponseEntity.ok(saved);
     }
 
-    // Delete a comment
+    // Delete a comment along with all replies below it
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteComment(@PathVariable String id) {
-        if (!commentRepository.existsById(id)) {
+        if (commentService.deleteThread(id).isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-
-        commentRepository.deleteById(id);
         return ResponseEntity.ok().build();
     }
 }
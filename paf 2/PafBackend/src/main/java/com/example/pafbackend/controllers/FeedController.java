@@ -0,0 +1,63 @@
+package com.example.pafbackend.controllers;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.HydrateRequest;
+import com.example.pafbackend.dto.HydratedPost;
+import com.example.pafbackend.models.Post;
+import com.example.pafbackend.services.FeedHydrationService;
+import com.example.pafbackend.services.TimelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/feed")
+public class FeedController {
+
+    private final TimelineService timelineService;
+    private final FeedHydrationService feedHydrationService;
+
+    @Value("${posts.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${posts.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${feed.hydrate.max-posts:100}")
+    private int maxHydratePosts;
+
+    @Autowired
+    public FeedController(TimelineService timelineService, FeedHydrationService feedHydrationService) {
+        this.timelineService = timelineService;
+        this.feedHydrationService = feedHydrationService;
+    }
+
+    // Posts from the user's friends, newest first
+    @GetMapping("/{userId}")
+    public ResponseEntity<CursorPage<Post>> getFeed(@PathVariable String userId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(timelineService.getFeed(userId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Posts, counts, viewer like/bookmark state and media for a page of feed cards in one call
+    @PostMapping("/hydrate")
+    public ResponseEntity<List<HydratedPost>> hydrate(@RequestBody HydrateRequest request) {
+        List<String> postIds = request.getPostIds();
+        if (postIds == null || postIds.size() > maxHydratePosts) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (postIds.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(feedHydrationService.hydrate(postIds, request.getViewerId()));
+    }
+}
@@ -1,15 +1,31 @@
 package com.example.pafbackend.controllers;
 
+import com.example.pafbackend.dto.CursorPage;
 import com.example.pafbackend.models.Group;
+import com.example.pafbackend.models.GroupMembership;
 import com.example.pafbackend.repositories.GroupRepository;
+import com.example.pafbackend.repositories.SparseFieldset;
+import com.example.pafbackend.services.CascadeDeletionService;
+import com.example.pafbackend.services.GroupDiscoveryService;
+import com.example.pafbackend.services.GroupMembershipService;
+import com.example.pafbackend.services.GroupPostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/groups")
@@ -18,16 +34,67 @@ public class GroupController {
     @Autowired
     private GroupRepository groupRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SparseFieldset sparseFieldset;
+
+    @Autowired
+    private GroupMembershipService groupMembershipService;
+
+    @Autowired
+    private GroupPostService groupPostService;
+
+    @Autowired
+    private GroupDiscoveryService groupDiscoveryService;
+
+    @Autowired
+    private CascadeDeletionService cascadeDeletionService;
+
+    @Value("${groups.discovery.default-limit:20}")
+    private int defaultDiscoverLimit;
+
+    @Value("${groups.discovery.max-limit:100}")
+    private int maxDiscoverLimit;
+
+    @Value("${groups.members.page.default-size:50}")
+    private int defaultMemberPageSize;
+
+    @Value("${groups.members.page.max-size:200}")
+    private int maxMemberPageSize;
+
+    // The list endpoints take ?fields=a,b to return only those fields (plus id) for each group
     @GetMapping
-    public ResponseEntity<List<Group>> getAllGroups() {
-        List<Group> groups = groupRepository.findAll();
-        return ResponseEntity.ok(groups);
+    public ResponseEntity<List<?>> getAllGroups(@RequestParam(required = false) String fields) {
+        return findAll(null, fields, groupRepository::findAll);
     }
     
+    // Served from memory and refreshed in the background, so it can lag writes by groups.discovery.refresh-interval-ms
     @GetMapping("/public")
-    public ResponseEntity<List<Group>> getPublicGroups() {
-        List<Group> groups = groupRepository.findByIsPublicTrue();
-        return ResponseEntity.ok(groups);
+    public ResponseEntity<List<?>> getPublicGroups(@RequestParam(required = false) String fields) {
+        return fromMemory(groupDiscoveryService.publicGroups(), fields);
+    }
+
+    // Public groups matching ?q= in name, tags or description, ranked by relevance and member count;
+    // ?tag= keeps only groups with that tag, and without q the most popular groups come back
+    @GetMapping("/discover")
+    public ResponseEntity<List<?>> discoverGroups(@RequestParam(required = false) String q,
+                                                  @RequestParam(required = false) String tag,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) String fields) {
+        int size = limit == null ? defaultDiscoverLimit : Math.max(1, Math.min(limit, maxDiscoverLimit));
+        return fromMemory(groupDiscoveryService.discover(q, tag, size), fields);
+    }
+
+    private ResponseEntity<List<?>> fromMemory(List<Group> groups, String fields) {
+        Set<String> selected;
+        try {
+            selected = sparseFieldset.parse(fields, Group.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(selected == null ? groups : sparseFieldset.toMaps(groups, Group.class, selected));
     }
     
     @GetMapping("/{id}")
@@ -38,81 +105,149 @@ public class GroupController {
     }
     
     @GetMapping("/creator/{userId}")
-    public ResponseEntity<List<Group>> getGroupsByCreator(@PathVariable String userId) {
-        List<Group> groups = groupRepository.findByCreatorId(userId);
-        return ResponseEntity.ok(groups);
+    public ResponseEntity<List<?>> getGroupsByCreator(@PathVariable String userId,
+                                                      @RequestParam(required = false) String fields) {
+        return findAll(Criteria.where("creatorId").is(userId), fields, () -> groupRepository.findByCreatorId(userId));
     }
     
     @GetMapping("/member/{userId}")
-    public ResponseEntity<List<Group>> getGroupsByMember(@PathVariable String userId) {
-        List<Group> groups = groupRepository.findByMemberIdsContaining(userId);
-        return ResponseEntity.ok(groups);
+    public ResponseEntity<List<?>> getGroupsByMember(@PathVariable String userId,
+                                                     @RequestParam(required = false) String fields) {
+        List<String> groupIds = groupMembershipService.groupIdsOf(userId);
+        return findAll(Criteria.where("id").in(groupIds), fields, () -> {
+            List<Group> groups = new ArrayList<>();
+            groupRepository.findAllById(groupIds).forEach(groups::add);
+            return groups;
+        });
+    }
+
+    private ResponseEntity<List<?>> findAll(Criteria filter, String fields, Supplier<List<Group>> fullDocuments) {
+        Set<String> selected;
+        try {
+            selected = sparseFieldset.parse(fields, Group.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(selected == null ? fullDocuments.get() : sparseFieldset.find(filter, Group.class, selected));
     }
     
+    // The creator becomes the first member and an admin
     @PostMapping
     public ResponseEntity<Group> createGroup(@RequestBody Group group) {
         group.setCreatedAt(new Date());
-        
-        // Add creator to members and admins lists
-        if (!group.getMemberIds().contains(group.getCreatorId())) {
-            group.getMemberIds().add(group.getCreatorId());
-        }
-        
-        if (!group.getAdminIds().contains(group.getCreatorId())) {
-            group.getAdminIds().add(group.getCreatorId());
-        }
-        
-        Group savedGroup = groupRepository.save(group);
+        Group savedGroup = groupMembershipService.create(group);
+        groupDiscoveryService.invalidate();
         return ResponseEntity.status(HttpStatus.CREATED).body(savedGroup);
     }
     
-    @PutMapping("/{id}")
-    public ResponseEntity<Group> updateGroup(@PathVariable String id, @RequestBody Group groupDetails) {
-        return groupRepository.findById(id)
-                .map(group -> {
-                    group.setName(groupDetails.getName());
-                    group.setDescription(groupDetails.getDescription());
-                    group.setImageUrl(groupDetails.getImageUrl());
-                    group.setTags(groupDetails.getTags());
-                    group.setRules(groupDetails.getRules());
-                    group.setPublic(groupDetails.isPublic());
-                    
-                    Group updatedGroup = groupRepository.save(group);
-                    return ResponseEntity.ok(updatedGroup);
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    // Single $set of only the fields present in the body; only an admin of the group may change it
+    @RequestMapping(value = "/{id}", method = {RequestMethod.PUT, RequestMethod.PATCH})
+    public ResponseEntity<Group> updateGroup(@PathVariable String id, @RequestBody Group groupDetails,
+                                             @RequestParam String userId) {
+        if (!groupMembershipService.isAdmin(id, userId)) {
+            return groupRepository.existsById(id)
+                    ? ResponseEntity.status(HttpStatus.FORBIDDEN).build()
+                    : ResponseEntity.notFound().build();
+        }
+        Update update = new Update();
+        if (groupDetails.getName() != null) {
+            update.set("name", groupDetails.getName());
+        }
+        if (groupDetails.getDescription() != null) {
+            update.set("description", groupDetails.getDescription());
+        }
+        if (groupDetails.getImageUrl() != null) {
+            update.set("imageUrl", groupDetails.getImageUrl());
+        }
+        if (groupDetails.getTags() != null) {
+            update.set("tags", groupDetails.getTags());
+        }
+        if (groupDetails.getRules() != null) {
+            update.set("rules", groupDetails.getRules());
+        }
+        if (groupDetails.getIsPublic() != null) {
+            update.set("isPublic", groupDetails.getIsPublic());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Group updatedGroup = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), Group.class);
+        if (updatedGroup == null) {
+            return ResponseEntity.notFound().build();
+        }
+        groupDiscoveryService.invalidate();
+        return ResponseEntity.ok(updatedGroup);
     }
     
+    // Members in join order; ?role=admin lists only the admins
+    @GetMapping("/{id}/members")
+    public ResponseEntity<CursorPage<GroupMembership>> getGroupMembers(@PathVariable String id,
+                                                                       @RequestParam(required = false) String role,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) Integer limit) {
+        if (!groupRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        int pageSize = limit == null ? defaultMemberPageSize : Math.max(1, Math.min(limit, maxMemberPageSize));
+        try {
+            return ResponseEntity.ok(groupMembershipService.members(id, role, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 201 when the user joined, 200 when already a member; private groups are joined through their admins
+    @PostMapping("/{id}/members/{userId}")
+    public ResponseEntity<Void> joinGroup(@PathVariable String id, @PathVariable String userId) {
+        return toResponse(groupMembershipService.join(id, userId), HttpStatus.CREATED);
+    }
+
+    // The creator cannot leave
+    @DeleteMapping("/{id}/members/{userId}")
+    public ResponseEntity<Void> leaveGroup(@PathVariable String id, @PathVariable String userId) {
+        GroupMembershipService.Outcome outcome = groupMembershipService.leave(id, userId);
+        return toResponse(outcome == GroupMembershipService.Outcome.UNCHANGED
+                ? GroupMembershipService.Outcome.NOT_FOUND : outcome, HttpStatus.NO_CONTENT);
+    }
+
+    // Only an admin of the group may promote
+    @PutMapping("/{id}/admins/{userId}")
+    public ResponseEntity<Void> promoteMember(@PathVariable String id, @PathVariable String userId,
+                                              @RequestParam String requesterId) {
+        return toResponse(groupMembershipService.promote(id, userId, requesterId), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<Void> toResponse(GroupMembershipService.Outcome outcome, HttpStatus changed) {
+        return switch (outcome) {
+            case CHANGED -> ResponseEntity.status(changed).build();
+            case UNCHANGED -> ResponseEntity.ok().build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case FORBIDDEN -> ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        };
+    }
+
+    // Replaces the whole member list; prefer the per-member endpoints above
     @PutMapping("/{id}/members")
     public ResponseEntity<Group> updateGroupMembers(@PathVariable String id, @RequestBody List<String> memberIds) {
         return groupRepository.findById(id)
                 .map(group -> {
-                    group.setMemberIds(memberIds);
-                    
-                    // Ensure creator stays in the members list
-                    if (!group.getMemberIds().contains(group.getCreatorId())) {
-                        group.getMemberIds().add(group.getCreatorId());
-                    }
-                    
-                    Group updatedGroup = groupRepository.save(group);
-                    return ResponseEntity.ok(updatedGroup);
+                    // The creator always stays a member
+                    groupMembershipService.replaceMembers(group, memberIds);
+                    return ResponseEntity.ok(groupRepository.findById(id).orElse(group));
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
+    // Replaces the whole admin list; prefer promoting members one at a time
     @PutMapping("/{id}/admins")
     public ResponseEntity<Group> updateGroupAdmins(@PathVariable String id, @RequestBody List<String> adminIds) {
         return groupRepository.findById(id)
                 .map(group -> {
-                    group.setAdminIds(adminIds);
-                    
-                    // Ensure creator stays in the admins list
-                    if (!group.getAdminIds().contains(group.getCreatorId())) {
-                        group.getAdminIds().add(group.getCreatorId());
-                    }
-                    
-                    Group updatedGroup = groupRepository.save(group);
-                    return ResponseEntity.ok(updatedGroup);
+                    // The creator always stays an admin
+                    groupMembershipService.replaceAdmins(group, adminIds);
+                    return ResponseEntity.ok(groupRepository.findById(id).orElse(group));
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -120,10 +255,10 @@ public class GroupController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteGroup(@PathVariable String id) {
         return groupRepository.findById(id)
-                .map(group -> {
-                    groupRepository.delete(group);
-                    return ResponseEntity.ok().<Void>build();
-                })
+                // Its posts and memberships are removed in the background
+                .map(group -> cascadeDeletionService.deleteGroup(group)
+                        ? ResponseEntity.ok().<Void>build()
+                        : ResponseEntity.notFound().<Void>build())
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
\ No newline at end of file
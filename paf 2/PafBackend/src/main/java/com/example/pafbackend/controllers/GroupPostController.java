@@ -1,13 +1,16 @@
 package com.example.pafbackend.controllers;
 
+import com.example.pafbackend.dto.GroupFeedPage;
 import com.example.pafbackend.models.GroupPost;
 import com.example.pafbackend.repositories.GroupPostRepository;
+import com.example.pafbackend.services.GroupMembershipService;
+import com.example.pafbackend.services.GroupPostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Date;
 import java.util.List;
 
 @RestController
@@ -17,40 +20,80 @@ public class GroupPostController {
     @Autowired
     private GroupPostRepository groupPostRepository;
 
+    @Autowired
+    private GroupPostService groupPostService;
+
+    @Autowired
+    private GroupMembershipService groupMembershipService;
+
+    @Value("${groups.posts.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${groups.posts.page.max-size:100}")
+    private int maxPageSize;
+
+    // Every post in the group, newest first; kept for existing clients, prefer the paged variant below
     @GetMapping("/group/{groupId}")
     public ResponseEntity<List<GroupPost>> getPostsByGroupId(@PathVariable String groupId) {
-        List<GroupPost> posts = groupPostRepository.findByGroupIdOrderByTimestampDesc(groupId);
-        return ResponseEntity.ok(posts);
+        return ResponseEntity.ok(groupPostRepository.findByGroupIdOrderByTimestampDesc(groupId));
+    }
+
+    // Newest first; pass nextCursor as ?cursor= for the next page. Pinned posts come with the first page
+    @GetMapping("/group/{groupId}/page")
+    public ResponseEntity<GroupFeedPage> getPostPageByGroupId(@PathVariable String groupId,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(groupPostService.feed(groupId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @PostMapping
     public ResponseEntity<GroupPost> createPost(@RequestBody GroupPost post) {
-        post.setTimestamp(new Date());
-        GroupPost savedPost = groupPostRepository.save(post);
+        GroupPost savedPost = groupPostService.create(post);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedPost);
     }
     
     @PutMapping("/{id}")
     public ResponseEntity<GroupPost> updatePost(@PathVariable String id, @RequestBody GroupPost postDetails) {
-        return groupPostRepository.findById(id)
-                .map(post -> {
-                    post.setContent(postDetails.getContent());
-                    post.setMediaUrl(postDetails.getMediaUrl());
-                    post.setMediaType(postDetails.getMediaType());
-                    
-                    GroupPost updatedPost = groupPostRepository.save(post);
-                    return ResponseEntity.ok(updatedPost);
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        GroupPost updatedPost = groupPostService.update(id, postDetails);
+        return updatedPost != null ? ResponseEntity.ok(updatedPost) : ResponseEntity.notFound().build();
+    }
+
+    // Only an admin of the group may pin; 409 once the group is at groups.posts.max-pinned
+    @PutMapping("/{id}/pin")
+    public ResponseEntity<GroupPost> pinPost(@PathVariable String id, @RequestParam String requesterId) {
+        return setPinned(id, requesterId, true);
+    }
+
+    @DeleteMapping("/{id}/pin")
+    public ResponseEntity<GroupPost> unpinPost(@PathVariable String id, @RequestParam String requesterId) {
+        return setPinned(id, requesterId, false);
+    }
+
+    private ResponseEntity<GroupPost> setPinned(String id, String requesterId, boolean pinned) {
+        GroupPost post = groupPostService.find(id);
+        if (post == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!groupMembershipService.isAdmin(post.getGroupId(), requesterId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            GroupPost updatedPost = groupPostService.setPinned(post, pinned);
+            return updatedPost != null ? ResponseEntity.ok(updatedPost) : ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePost(@PathVariable String id) {
-        return groupPostRepository.findById(id)
-                .map(post -> {
-                    groupPostRepository.delete(post);
-                    return ResponseEntity.ok().<Void>build();
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
-    }
-}
\ No newline at end of file
+        return groupPostService.delete(id)
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.notFound().build();
+    }
+}
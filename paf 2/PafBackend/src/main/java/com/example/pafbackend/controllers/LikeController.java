@@ -2,22 +2,32 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.Like;
 import com.example.pafbackend.repositories.LikeRepository;
+import com.example.pafbackend.services.LikeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/likes")
 public class LikeController {
 
     private final LikeRepository likeRepository;
+    private final LikeService likeService;
+
+    @Value("${likes.has-liked.max-posts:200}")
+    private int maxHasLikedPosts;
 
     @Autowired
-    public LikeController(LikeRepository likeRepository) {
+    public LikeController(LikeRepository likeRepository, LikeService likeService) {
         this.likeRepository = likeRepository;
+        this.likeService = likeService;
     }
 
     @GetMapping("/{postId}")
@@ -26,15 +36,50 @@ public class LikeController {
         return new ResponseEntity<>(likes, HttpStatus.OK);
     }
 
+    // postId -> whether the user liked it, for up to likes.has-liked.max-posts ids in one index-only query
+    @GetMapping("/has-liked")
+    public ResponseEntity<Map<String, Boolean>> hasLiked(@RequestParam String userId, @RequestParam List<String> postIds) {
+        if (postIds.size() > maxHasLikedPosts) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Set<String> liked = likeService.likedPostIds(userId, postIds);
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        postIds.forEach(postId -> result.put(postId, liked.contains(postId)));
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    // Idempotent: sets the like to the requested state, so retries and double taps change nothing.
+    // In write-behind mode the change is only queued: 202 and no "changed" flag.
+    @PutMapping("/{postId}/{userId}")
+    public ResponseEntity<Map<String, Object>> setLiked(@PathVariable String postId, @PathVariable String userId,
+                                                        @RequestParam(defaultValue = "true") boolean liked) {
+        boolean changed = likeService.setLiked(postId, userId, liked);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("postId", postId);
+        result.put("userId", userId);
+        result.put("liked", liked);
+        if (likeService.isWriteBehind()) {
+            return new ResponseEntity<>(result, HttpStatus.ACCEPTED);
+        }
+        result.put("changed", changed);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    // Same semantics as PUT; answers 201 only when the like is new
     @PostMapping
     public ResponseEntity<Like> createLike(@RequestBody Like like) {
-        Like savedLike = likeRepository.save(like);
-        return new ResponseEntity<>(savedLike, HttpStatus.CREATED);
+        if (likeService.isWriteBehind()) {
+            likeService.setLiked(like.getPostId(), like.getUserId(), true);
+            return new ResponseEntity<>(like, HttpStatus.ACCEPTED);
+        }
+        boolean created = likeService.setLiked(like.getPostId(), like.getUserId(), true);
+        Like savedLike = likeService.findLike(like.getPostId(), like.getUserId());
+        return new ResponseEntity<>(savedLike, created ? HttpStatus.CREATED : HttpStatus.OK);
     }
 
     @DeleteMapping("/{likeId}")
     public ResponseEntity<Void> deleteLike(@PathVariable String likeId) {
-        likeRepository.deleteById(likeId);
+        likeService.removeById(likeId);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 }
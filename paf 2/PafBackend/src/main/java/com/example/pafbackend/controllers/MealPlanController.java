@@ -2,10 +2,13 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.MealPlan;
 import com.example.pafbackend.repositories.MealPlanRepository;
+import com.example.pafbackend.repositories.SparseFieldset;
+import com.example.pafbackend.services.RecipeMatchService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/meal-plans")
@@ -13,14 +16,28 @@ import java.util.List;
 public class MealPlanController {
 
     private final MealPlanRepository mealPlanRepository;
+    private final RecipeMatchService recipeMatchService;
+    private final SparseFieldset sparseFieldset;
 
-    public MealPlanController(MealPlanRepository mealPlanRepository) {
+    public MealPlanController(MealPlanRepository mealPlanRepository, RecipeMatchService recipeMatchService,
+                              SparseFieldset sparseFieldset) {
         this.mealPlanRepository = mealPlanRepository;
+        this.recipeMatchService = recipeMatchService;
+        this.sparseFieldset = sparseFieldset;
     }
 
+    // ?fields=a,b returns only those fields (plus id) for each meal plan
     @GetMapping
-    public ResponseEntity<List<MealPlan>> getAllMealPlans() {
-        return ResponseEntity.ok(mealPlanRepository.findAll());
+    public ResponseEntity<List<?>> getAllMealPlans(@RequestParam(required = false) String fields) {
+        Set<String> selected;
+        try {
+            selected = sparseFieldset.parse(fields, MealPlan.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(selected == null
+                ? mealPlanRepository.findAll()
+                : sparseFieldset.find(null, MealPlan.class, selected));
     }
 
     @GetMapping("/{id}")
@@ -32,7 +49,9 @@ public class MealPlanController {
 
     @PostMapping
     public ResponseEntity<MealPlan> createMealPlan(@RequestBody MealPlan mealPlan) {
-        return ResponseEntity.ok(mealPlanRepository.save(mealPlan));
+        MealPlan saved = mealPlanRepository.save(mealPlan);
+        recipeMatchService.index(saved);
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/{id}")
@@ -40,7 +59,9 @@ public class MealPlanController {
         return mealPlanRepository.findById(id)
                 .map(existingMealPlan -> {
                     mealPlan.setId(id);
-                    return ResponseEntity.ok(mealPlanRepository.save(mealPlan));
+                    MealPlan saved = mealPlanRepository.save(mealPlan);
+                    recipeMatchService.index(saved);
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -50,6 +71,7 @@ public class MealPlanController {
         return mealPlanRepository.findById(id)
                 .map(mealPlan -> {
                     mealPlanRepository.delete(mealPlan);
+                    recipeMatchService.remove(RecipeMatchService.SOURCE_MEAL_PLAN, id);
                     return ResponseEntity.ok().<Void>build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -2,23 +2,33 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.Notification;
 import com.example.pafbackend.repositories.NotificationRepository;
+import com.example.pafbackend.services.NotificationService;
+import com.example.pafbackend.services.NotificationStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
 public class NotificationController {
 
     private final NotificationRepository notificationRepository;
+    private final NotificationService notificationService;
+    private final NotificationStreamService notificationStreamService;
 
     @Autowired
-    public NotificationController(NotificationRepository notificationRepository) {
+    public NotificationController(NotificationRepository notificationRepository,
+                                  NotificationService notificationService,
+                                  NotificationStreamService notificationStreamService) {
         this.notificationRepository = notificationRepository;
+        this.notificationService = notificationService;
+        this.notificationStreamService = notificationStreamService;
     }
 
     @GetMapping("/user/{userId}")
@@ -33,41 +43,49 @@ public class NotificationController {
         return new ResponseEntity<>(notifications, HttpStatus.OK);
     }
 
+    // Served from an in-memory counter, cheap enough for badge polling
+    @GetMapping("/unread-count/{userId}")
+    public ResponseEntity<Map<String, Long>> getUnreadCount(@PathVariable String userId) {
+        return new ResponseEntity<>(Map.of("count", notificationService.unreadCount(userId)), HttpStatus.OK);
+    }
+
+    // Server-Sent Events: an "unread" count first, then a "notification" event for each new one.
+    // 503 when this node is at its stream cap; clients retry with backoff.
+    @GetMapping(path = "/stream/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamNotifications(@PathVariable String userId) {
+        SseEmitter emitter = notificationStreamService.subscribe(userId);
+        if (emitter == null) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
+
     @PostMapping
     public ResponseEntity<Notification> createNotification(@RequestBody Notification notification) {
-        notification.setTimestamp(new Date());
-        notification.setRead(false);
-        Notification savedNotification = notificationRepository.save(notification);
+        Notification savedNotification = notificationService.create(notification);
         return new ResponseEntity<>(savedNotification, HttpStatus.CREATED);
     }
     
     @PutMapping("/{id}/read")
     public ResponseEntity<Notification> markAsRead(@PathVariable String id) {
-        return notificationRepository.findById(id)
-                .map(notification -> {
-                    notification.setRead(true);
-                    return ResponseEntity.ok(notificationRepository.save(notification));
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        Notification notification = notificationService.markRead(id);
+        if (notification == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(notification);
     }
     
     @PutMapping("/read-all/{userId}")
     public ResponseEntity<Void> markAllAsRead(@PathVariable String userId) {
-        List<Notification> notifications = notificationRepository.findByUserIdAndReadFalse(userId);
-        for (Notification notification : notifications) {
-            notification.setRead(true);
-            notificationRepository.save(notification);
-        }
+        notificationService.markAllRead(userId);
         return ResponseEntity.ok().build();
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteNotification(@PathVariable String id) {
-        return notificationRepository.findById(id)
-                .map(notification -> {
-                    notificationRepository.delete(notification);
-                    return ResponseEntity.ok().<Void>build();
-                })
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        if (!notificationService.delete(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
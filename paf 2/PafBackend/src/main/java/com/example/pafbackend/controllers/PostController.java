@@ -1,45 +1,201 @@
 package com.example.pafbackend.controllers;
 
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.PostBrowsePage;
+import com.example.pafbackend.dto.PostSummary;
 import com.example.pafbackend.models.Post;
 import com.example.pafbackend.repositories.PostRepository;
+import com.example.pafbackend.repositories.SparseFieldset;
+import com.example.pafbackend.services.CascadeDeletionService;
+import com.example.pafbackend.services.PostBrowseService;
+import com.example.pafbackend.services.RecipeAttributes;
+import com.example.pafbackend.services.RecipeMatchService;
+import com.example.pafbackend.services.RecipeSearchIndex;
+import com.example.pafbackend.services.TimelineService;
+import com.example.pafbackend.services.TrendingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/posts")
 public class PostController {
 
     private final PostRepository postRepository;
+    private final TimelineService timelineService;
+    private final MongoTemplate mongoTemplate;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeMatchService recipeMatchService;
+    private final PostBrowseService postBrowseService;
+    private final TrendingService trendingService;
+    private final SparseFieldset sparseFieldset;
+    private final CascadeDeletionService cascadeDeletionService;
+
+    @Value("${posts.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${posts.page.max-size:100}")
+    private int maxPageSize;
 
     @Autowired
-    public PostController(PostRepository postRepository) {
+    public PostController(PostRepository postRepository, TimelineService timelineService, MongoTemplate mongoTemplate,
+                          RecipeSearchIndex recipeSearchIndex, RecipeMatchService recipeMatchService,
+                          PostBrowseService postBrowseService, TrendingService trendingService,
+                          SparseFieldset sparseFieldset, CascadeDeletionService cascadeDeletionService) {
         this.postRepository = postRepository;
+        this.timelineService = timelineService;
+        this.mongoTemplate = mongoTemplate;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeMatchService = recipeMatchService;
+        this.postBrowseService = postBrowseService;
+        this.trendingService = trendingService;
+        this.sparseFieldset = sparseFieldset;
+        this.cascadeDeletionService = cascadeDeletionService;
     }
 
+    // Cursor-paginated variants of the list endpoints below; pass back nextCursor to get the following page.
+    // With ?fields=title,timestamp each item is a map of just those fields plus id.
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<?>> getPostPage(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(required = false) String fields) {
+        return findPage(null, cursor, limit, fields);
+    }
+
+    @GetMapping("/page/user/{userId}")
+    public ResponseEntity<CursorPage<?>> getPostPageByUserId(@PathVariable String userId,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) String fields) {
+        return findPage(Criteria.where("userId").is(userId), cursor, limit, fields);
+    }
+
+    @GetMapping("/page/cuisine/{cuisineType}")
+    public ResponseEntity<CursorPage<?>> getPostPageByCuisineType(@PathVariable String cuisineType,
+                                                                  @RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  @RequestParam(required = false) String fields) {
+        return findPage(Criteria.where("cuisineType").is(cuisineType), cursor, limit, fields);
+    }
+
+    private ResponseEntity<CursorPage<?>> findPage(Criteria filter, String cursor, Integer limit, String fields) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            Set<String> selected = sparseFieldset.parse(fields, Post.class);
+            return ResponseEntity.ok(selected == null
+                    ? postRepository.findPage(filter, cursor, pageSize)
+                    : postRepository.findFieldsPage(filter, cursor, pageSize, selected));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
+    // Lightweight cards for thumbnail grids, optionally for one user or cuisine
+    @GetMapping("/summaries")
+    public ResponseEntity<CursorPage<PostSummary>> getPostSummaries(@RequestParam(required = false) String userId,
+                                                                    @RequestParam(required = false) String cuisineType,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(required = false) Integer limit) {
+        Criteria filter = null;
+        if (userId != null) {
+            filter = Criteria.where("userId").is(userId);
+        } else if (cuisineType != null) {
+            filter = Criteria.where("cuisineType").is(cuisineType);
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(postRepository.findSummaryPage(filter, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Any combination of cuisine, difficulty and cooking-time range, newest first; the first page also carries facet counts
+    @GetMapping("/browse")
+    public ResponseEntity<PostBrowsePage> browsePosts(@RequestParam(required = false) String cuisineType,
+                                                      @RequestParam(required = false) String difficulty,
+                                                      @RequestParam(required = false) Integer minMinutes,
+                                                      @RequestParam(required = false) Integer maxMinutes,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        String normalizedDifficulty = RecipeAttributes.normalizeDifficulty(difficulty);
+        if (difficulty != null && normalizedDifficulty == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        CursorPage<Post> page;
+        try {
+            page = postRepository.findPage(
+                    postBrowseService.filter(cuisineType, normalizedDifficulty, minMinutes, maxMinutes), cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        PostBrowsePage result = new PostBrowsePage();
+        result.setItems(page.getItems());
+        result.setNextCursor(page.getNextCursor());
+        result.setHasMore(page.isHasMore());
+        if (cursor == null || cursor.isBlank()) {
+            result.setFacets(postBrowseService.facets(cuisineType, normalizedDifficulty, minMinutes, maxMinutes));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // Most liked, commented and bookmarked posts with recent activity counting most; optionally for one cuisine
+    @GetMapping("/trending")
+    public ResponseEntity<List<Post>> getTrendingPosts(@RequestParam(required = false) String cuisineType,
+                                                       @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        return new ResponseEntity<>(trendingService.trending(cuisineType, pageSize), HttpStatus.OK);
+    }
+
+    // Ranked full-text search over title, description and ingredients
+    @GetMapping("/search")
+    public ResponseEntity<List<Post>> searchPosts(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        return new ResponseEntity<>(recipeSearchIndex.search(q, pageSize), HttpStatus.OK);
+    }
 
     @GetMapping
-    public ResponseEntity<List<Post>> getPosts() {
-        List<Post> posts = postRepository.findAll();
-        return new ResponseEntity<>(posts, HttpStatus.OK);
+    public ResponseEntity<List<?>> getPosts(@RequestParam(required = false) String fields) {
+        return findAll(null, fields, postRepository::findAll);
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<List<Post>> getPostsByUserId(@PathVariable String userId) {
-        List<Post> posts = postRepository.findByUserId(userId);
-        return new ResponseEntity<>(posts, HttpStatus.OK);
+    public ResponseEntity<List<?>> getPostsByUserId(@PathVariable String userId,
+                                                    @RequestParam(required = false) String fields) {
+        return findAll(Criteria.where("userId").is(userId), fields, () -> postRepository.findByUserId(userId));
     }
     
     // No major changes needed, but you may want to add a method for filtering by cuisine type
-<<<<<<< HEAD
     @GetMapping("/cuisine/{cuisineType}")
-    public ResponseEntity<List<Post>> getPostsByCuisineType(@PathVariable String cuisineType) {
-        List<Post> posts = postRepository.findByCuisineType(cuisineType);
+    public ResponseEntity<List<?>> getPostsByCuisineType(@PathVariable String cuisineType,
+                                                         @RequestParam(required = false) String fields) {
+        return findAll(Criteria.where("cuisineType").is(cuisineType), fields,
+                () -> postRepository.findByCuisineType(cuisineType));
+    }
+
+    private ResponseEntity<List<?>> findAll(Criteria filter, String fields, Supplier<List<Post>> fullDocuments) {
+        Set<String> selected;
+        try {
+            selected = sparseFieldset.parse(fields, Post.class);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<?> posts = selected == null ? fullDocuments.get() : sparseFieldset.find(filter, Post.class, selected);
         return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
@@ -61,53 +217,29 @@ public class PostController {
                 post.getMediaTypes().add(post.getMediaType() != null ? post.getMediaType() : "");
             }
             
+            // The keyset feeds page on (timestamp, id), so a missing or future time from the client would break or pin them
+            post.setTimestamp(new Date());
+            // Decided by the timeline fan-out, never by the client
+            post.setFanOutOnRead(false);
+            // Counters only move through $inc from the like and comment endpoints
+            post.setLikeCount(0);
+            post.setCommentCount(0);
+            PostBrowseService.applyParsedAttributes(post);
+
             // Log what we're saving
             System.out.println("Saving post with media: " + post.getMediaLinks().size() + " items");
             
             Post savedPost = postRepository.save(post);
+            timelineService.fanOutAsync(savedPost);
+            recipeSearchIndex.index(savedPost);
+            recipeMatchService.index(savedPost);
+            postBrowseService.invalidateFacets();
             return new ResponseEntity<>(savedPost, HttpStatus.CREATED);
         } catch (Exception e) {
             System.err.println("Error creating post: " + e.getMessage());
             e.printStackTrace();
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR); 
         }
-=======
-    // No major changes needed, but you may want to add a method for filtering by cuisine type
-@GetMapping("/cuisine/{cuisineType}")
-public ResponseEntity<List<Post>> getPostsByCuisineType(@PathVariable String cuisineType) {
-    List<Post> posts = postRepository.findByCuisineType(cuisineType);
-    return new ResponseEntity<>(posts, HttpStatus.OK);
-}
-
-@PostMapping
-public ResponseEntity<Post> createPost(@RequestBody Post post) {
-    try {
-        // Ensure the media arrays exist
-        if (post.getMediaLinks() == null) {
-            post.setMediaLinks(new ArrayList<>());
-        }
-        if (post.getMediaTypes() == null) {
-            post.setMediaTypes(new ArrayList<>());
-        }
-
-
-        // For backward compatibility, add single media to arrays if they're not already there
-        if (post.getMediaLink() != null && !post.getMediaLink().isEmpty() && 
-            !post.getMediaLinks().contains(post.getMediaLink())) {
-            post.getMediaLinks().add(post.getMediaLink());
-            post.getMediaTypes().add(post.getMediaType() != null ? post.getMediaType() : "");
-        }
-        
-        // Log what we're saving
-        System.out.println("Saving post with media: " + post.getMediaLinks().size() + " items");
-        
-        Post savedPost = postRepository.save(post);
-        return new ResponseEntity<>(savedPost, HttpStatus.CREATED);
-    } catch (Exception e) {
-        System.err.println("Error creating post: " + e.getMessage());
-        e.printStackTrace();
-        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR); 
->>>>>>> baffbc9d6c46f55c4114d39f6cad613d48b281b2
     }
 
     @DeleteMapping("/{postId}")
@@ -124,63 +256,62 @@ public ResponseEntity<Post> createPost(@RequestBody Post post) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
         
-        // If the user is the owner, delete the post
-        postRepository.deleteById(postId);
+        // If the user is the owner, delete the post; its likes, comments and the rest follow in the background
+        if (!cascadeDeletionService.deletePost(post)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    @PutMapping("/{postId}")
+    // PUT and PATCH both apply only the fields present in the body with a single $set,
+    // matched on id and owner so there is no read-modify-write window
+    @RequestMapping(value = "/{postId}", method = {RequestMethod.PUT, RequestMethod.PATCH})
     public ResponseEntity<Post> updatePost(@PathVariable String postId, @RequestBody Post updatedPost, @RequestParam String userId) {
-        Optional<Post> optionalPost = postRepository.findById(postId);
-        if (optionalPost.isPresent()) {
-            Post existingPost = optionalPost.get();
-            
-            // Check if the user is the owner of the post
-            if (!existingPost.getUserId().equals(userId)) {
-                return new ResponseEntity<>(HttpStatus.FORBIDDEN);
-            }
-            
-            // Update fields if present in the request body
-            if (updatedPost.getTitle() != null) {
-                existingPost.setTitle(updatedPost.getTitle());
-            }
-            if (updatedPost.getContentDescription() != null) {
-                existingPost.setContentDescription(updatedPost.getContentDescription());
-            }
-            if (updatedPost.getIngredients() != null) {
-                existingPost.setIngredients(updatedPost.getIngredients());
-            }
-            if (updatedPost.getInstructions() != null) {
-                existingPost.setInstructions(updatedPost.getInstructions());
-            }
-            if (updatedPost.getCookingTime() != null) {
-                existingPost.setCookingTime(updatedPost.getCookingTime());
-            }
-            if (updatedPost.getDifficultyLevel() != null) {
-                existingPost.setDifficultyLevel(updatedPost.getDifficultyLevel());
-            }
-            if (updatedPost.getCuisineType() != null) {
-                existingPost.setCuisineType(updatedPost.getCuisineType());
-            }
-            
-            // Update media fields
-            if (updatedPost.getMediaLinks() != null && !updatedPost.getMediaLinks().isEmpty()) {
-                existingPost.setMediaLinks(updatedPost.getMediaLinks());
-                existingPost.setMediaTypes(updatedPost.getMediaTypes());
-                
-                // Update legacy fields for backward compatibility
-                if (!updatedPost.getMediaLinks().isEmpty()) {
-                    existingPost.setMediaLink(updatedPost.getMediaLinks().get(0));
-                    existingPost.setMediaType(updatedPost.getMediaTypes().size() > 0 ? 
-                            updatedPost.getMediaTypes().get(0) : "");
-                }
-            }
-            
-            // Save the updated post
-            Post savedPost = postRepository.save(existingPost);
-            return new ResponseEntity<>(savedPost, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        Update update = new Update();
+        if (updatedPost.getTitle() != null) {
+            update.set("title", updatedPost.getTitle());
+        }
+        if (updatedPost.getContentDescription() != null) {
+            update.set("contentDescription", updatedPost.getContentDescription());
+        }
+        if (updatedPost.getIngredients() != null) {
+            update.set("ingredients", updatedPost.getIngredients());
+        }
+        if (updatedPost.getInstructions() != null) {
+            update.set("instructions", updatedPost.getInstructions());
+        }
+        if (updatedPost.getCookingTime() != null) {
+            update.set("cookingTime", updatedPost.getCookingTime());
+            update.set("cookingMinutes", RecipeAttributes.parseMinutes(updatedPost.getCookingTime()));
+        }
+        if (updatedPost.getDifficultyLevel() != null) {
+            update.set("difficultyLevel", updatedPost.getDifficultyLevel());
+            update.set("difficulty", RecipeAttributes.normalizeDifficulty(updatedPost.getDifficultyLevel()));
+        }
+        if (updatedPost.getCuisineType() != null) {
+            update.set("cuisineType", updatedPost.getCuisineType());
+        }
+
+        // Update media fields, keeping the legacy single-media fields in step
+        if (updatedPost.getMediaLinks() != null && !updatedPost.getMediaLinks().isEmpty()) {
+            update.set("mediaLinks", updatedPost.getMediaLinks());
+            update.set("mediaTypes", updatedPost.getMediaTypes());
+            update.set("mediaLink", updatedPost.getMediaLinks().get(0));
+            update.set("mediaType", updatedPost.getMediaTypes() != null && !updatedPost.getMediaTypes().isEmpty() ?
+                    updatedPost.getMediaTypes().get(0) : "");
+        }
+
+        Query ownedPost = Query.query(Criteria.where("id").is(postId).and("userId").is(userId));
+        Post savedPost = update.getUpdateObject().isEmpty()
+                ? mongoTemplate.findOne(ownedPost, Post.class)
+                : mongoTemplate.findAndModify(ownedPost, update, FindAndModifyOptions.options().returnNew(true), Post.class);
+        if (savedPost == null) {
+            // Only a miss costs a second query, to tell a missing post from someone else's
+            return new ResponseEntity<>(postRepository.existsById(postId) ? HttpStatus.FORBIDDEN : HttpStatus.NOT_FOUND);
         }
+        recipeSearchIndex.index(savedPost);
+        recipeMatchService.index(savedPost);
+        postBrowseService.invalidateFacets();
+        return new ResponseEntity<>(savedPost, HttpStatus.OK);
     }
 }
\ No newline at end of file
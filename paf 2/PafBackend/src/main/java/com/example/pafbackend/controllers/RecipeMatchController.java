@@ -0,0 +1,44 @@
+package com.example.pafbackend.controllers;
+
+import com.example.pafbackend.dto.RecipeMatch;
+import com.example.pafbackend.services.RecipeMatchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/recipes")
+public class RecipeMatchController {
+
+    private final RecipeMatchService recipeMatchService;
+
+    @Value("${posts.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${posts.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${recipes.match.max-pantry-size:100}")
+    private int maxPantrySize;
+
+    @Autowired
+    public RecipeMatchController(RecipeMatchService recipeMatchService) {
+        this.recipeMatchService = recipeMatchService;
+    }
+
+    // Recipes ranked by how much of their ingredient list the pantry covers, e.g. ?ingredients=eggs,flour,milk
+    @GetMapping("/match")
+    public ResponseEntity<List<RecipeMatch>> match(@RequestParam List<String> ingredients,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) Integer maxMissing) {
+        if (ingredients.size() > maxPantrySize) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        int missing = maxMissing == null ? Integer.MAX_VALUE : Math.max(0, maxMissing);
+        return ResponseEntity.ok(recipeMatchService.match(ingredients, pageSize, missing));
+    }
+}
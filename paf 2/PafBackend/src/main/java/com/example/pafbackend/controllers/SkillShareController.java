@@ -2,45 +2,68 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.SkillShare;
 import com.example.pafbackend.repositories.SkillShareRepository;
+import com.example.pafbackend.repositories.SparseFieldset;
+import com.example.pafbackend.services.RecipeMatchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/SkillShares")
 public class SkillShareController {
     
     private final SkillShareRepository SkillShareRepository;
+    private final RecipeMatchService recipeMatchService;
+    private final SparseFieldset sparseFieldset;
     
     @Autowired
-    public SkillShareController(SkillShareRepository SkillShareRepository) {
+    public SkillShareController(SkillShareRepository SkillShareRepository, RecipeMatchService recipeMatchService,
+                                SparseFieldset sparseFieldset) {
         this.SkillShareRepository = SkillShareRepository;
+        this.recipeMatchService = recipeMatchService;
+        this.sparseFieldset = sparseFieldset;
     }
     
+    // ?fields=a,b returns only those fields (plus id) for each Skill Share
     @GetMapping
-    public ResponseEntity<List<SkillShare>> getSkillShares() {
-        List<SkillShare> SkillShares = SkillShareRepository.findAll();
-        return new ResponseEntity<>(SkillShares, HttpStatus.OK);
+    public ResponseEntity<List<?>> getSkillShares(@RequestParam(required = false) String fields) {
+        return findAll(null, fields, SkillShareRepository::findAll);
     }
     
     @GetMapping("/{userId}")
-    public ResponseEntity<List<SkillShare>> getSkillSharesByUserId(@PathVariable String userId) {
-        List<SkillShare> SkillShares = SkillShareRepository.findByUserId(userId);
+    public ResponseEntity<List<?>> getSkillSharesByUserId(@PathVariable String userId,
+                                                          @RequestParam(required = false) String fields) {
+        return findAll(Criteria.where("userId").is(userId), fields, () -> SkillShareRepository.findByUserId(userId));
+    }
+    
+    private ResponseEntity<List<?>> findAll(Criteria filter, String fields, Supplier<List<SkillShare>> fullDocuments) {
+        Set<String> selected;
+        try {
+            selected = sparseFieldset.parse(fields, SkillShare.class);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<?> SkillShares = selected == null ? fullDocuments.get() : sparseFieldset.find(filter, SkillShare.class, selected);
         return new ResponseEntity<>(SkillShares, HttpStatus.OK);
     }
     
     @PostMapping
     public ResponseEntity<SkillShare> createSkillShare(@RequestBody SkillShare SkillShare) {
         SkillShare savedSkillShare = SkillShareRepository.save(SkillShare);
+        recipeMatchService.index(savedSkillShare);
         return new ResponseEntity<>(savedSkillShare, HttpStatus.CREATED);
     }
     
     @DeleteMapping("/{SkillShareId}")
     public ResponseEntity<Void> deleteSkillShare(@PathVariable String SkillShareId) {
         SkillShareRepository.deleteById(SkillShareId);
+        recipeMatchService.remove(RecipeMatchService.SOURCE_SKILL_SHARE, SkillShareId);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
     
@@ -56,6 +79,7 @@ public class SkillShareController {
         
         // Update the Skill Share
         SkillShare savedSkillShare = SkillShareRepository.save(updatedSkillShare);
+        recipeMatchService.index(savedSkillShare);
         
         return new ResponseEntity<>(savedSkillShare, HttpStatus.OK);
     }
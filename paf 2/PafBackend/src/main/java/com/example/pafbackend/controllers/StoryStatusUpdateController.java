@@ -3,6 +3,11 @@ package com.example.pafbackend.controllers;
 import com.example.pafbackend.models.StoryStatusUpdate;
 import com.example.pafbackend.repositories.StoryStatusUpdateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,10 +19,12 @@ import java.util.List;
 public class StoryStatusUpdateController {
 
     private final StoryStatusUpdateRepository workoutStatusUpdateRepository;
+    private final MongoTemplate mongoTemplate;
 
     @Autowired
-    public StoryStatusUpdateController(StoryStatusUpdateRepository workoutStatusUpdateRepository) {
+    public StoryStatusUpdateController(StoryStatusUpdateRepository workoutStatusUpdateRepository, MongoTemplate mongoTemplate) {
         this.workoutStatusUpdateRepository = workoutStatusUpdateRepository;
+        this.mongoTemplate = mongoTemplate;
     }
 
     @GetMapping
@@ -44,16 +51,32 @@ public class StoryStatusUpdateController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    @PutMapping("/{updateId}")
-    public ResponseEntity<StoryStatusUpdate> updateUpdate(@PathVariable String updateId, @RequestBody StoryStatusUpdate updateDetails) {
-        return workoutStatusUpdateRepository.findById(updateId)
-                .map(existingUpdate -> {
-                    existingUpdate.setTitle(updateDetails.getTitle());
-                    existingUpdate.setImage(updateDetails.getImage());
-                    existingUpdate.setDescription(updateDetails.getDescription());
-                    StoryStatusUpdate updatedUpdate = workoutStatusUpdateRepository.save(existingUpdate);
-                    return ResponseEntity.ok(updatedUpdate);
-                })
-                .orElse(ResponseEntity.notFound().build());
+    // Single $set of only the fields present in the body, matched on id and owner
+    @RequestMapping(value = "/{updateId}", method = {RequestMethod.PUT, RequestMethod.PATCH})
+    public ResponseEntity<StoryStatusUpdate> updateUpdate(@PathVariable String updateId, @RequestBody StoryStatusUpdate updateDetails,
+                                                          @RequestParam String userId) {
+        Update update = new Update();
+        if (updateDetails.getTitle() != null) {
+            update.set("title", updateDetails.getTitle());
+        }
+        if (updateDetails.getImage() != null) {
+            update.set("image", updateDetails.getImage());
+        }
+        if (updateDetails.getDescription() != null) {
+            update.set("description", updateDetails.getDescription());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        StoryStatusUpdate updatedUpdate = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(updateId).and("userId").is(userId)), update,
+                FindAndModifyOptions.options().returnNew(true), StoryStatusUpdate.class);
+        if (updatedUpdate == null) {
+            return workoutStatusUpdateRepository.existsById(updateId)
+                    ? new ResponseEntity<>(HttpStatus.FORBIDDEN)
+                    : new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(updatedUpdate);
     }
 }
@@ -1,23 +1,54 @@
 package com.example.pafbackend.controllers;
 
+import com.example.pafbackend.dto.ConnectionProfile;
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.FriendSuggestion;
 import com.example.pafbackend.models.UserConnection;
 import com.example.pafbackend.repositories.UserConnectionRepository;
+import com.example.pafbackend.services.ConnectionEdgeService;
+import com.example.pafbackend.services.SocialGraphService;
+import com.example.pafbackend.services.UserConnectionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/userConnections")
 public class UserConnectionController {
 
     private final UserConnectionRepository userConnectionRepository;
+    private final UserConnectionService userConnectionService;
+    private final SocialGraphService socialGraphService;
+    private final ConnectionEdgeService connectionEdgeService;
+
+    @Value("${connections.check.max-ids:500}")
+    private int maxCheckIds;
+
+    @Value("${connections.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${connections.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${connections.graph.suggestions.max-limit:100}")
+    private int maxSuggestions;
 
     @Autowired
-    public UserConnectionController(UserConnectionRepository userConnectionRepository) {
+    public UserConnectionController(UserConnectionRepository userConnectionRepository,
+                                    UserConnectionService userConnectionService,
+                                    SocialGraphService socialGraphService,
+                                    ConnectionEdgeService connectionEdgeService) {
         this.userConnectionRepository = userConnectionRepository;
+        this.userConnectionService = userConnectionService;
+        this.socialGraphService = socialGraphService;
+        this.connectionEdgeService = connectionEdgeService;
     }
 
     @GetMapping("/{userId}")
@@ -30,35 +61,48 @@ public class UserConnectionController {
         }
     }
 
+    // The users in the user's friend list with their name and image, most recently added first
+    @GetMapping("/{userId}/following")
+    public ResponseEntity<CursorPage<ConnectionProfile>> getFollowing(@PathVariable String userId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(connectionEdgeService.following(userId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // The users who have the user in their friend list, most recently added first
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<CursorPage<ConnectionProfile>> getFollowers(@PathVariable String userId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        try {
+            return ResponseEntity.ok(connectionEdgeService.followers(userId, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Adds the given friendIds to the user's friends and the user to each of theirs; safe to retry or run concurrently
     @PostMapping
     public ResponseEntity<UserConnection> createUserConnection(@RequestBody UserConnection userConnection) {
-        // Check if a document with the userId already exists
-        UserConnection existingConnection = userConnectionRepository.findByUserId(userConnection.getUserId());
-        if (existingConnection != null) {
-            // Update the existing document by adding new friendIds
-            List<String> currentFriendIds = existingConnection.getFriendIds();
-            List<String> newFriendIds = userConnection.getFriendIds();
-            currentFriendIds.addAll(newFriendIds);
-            existingConnection.setFriendIds(currentFriendIds);
-            UserConnection updatedConnection = userConnectionRepository.save(existingConnection);
-            return new ResponseEntity<>(updatedConnection, HttpStatus.OK);
-        } else {
-            // No existing document, create a new one
-            UserConnection savedUserConnection = userConnectionRepository.save(userConnection);
-            return new ResponseEntity<>(savedUserConnection, HttpStatus.CREATED);
+        if (userConnection.getUserId() == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        List<String> friendIds = userConnection.getFriendIds() == null ? List.of() : userConnection.getFriendIds();
+        boolean created = userConnectionService.addFriends(userConnection.getUserId(), friendIds);
+        UserConnection updatedConnection = userConnectionRepository.findByUserId(userConnection.getUserId());
+        return new ResponseEntity<>(updatedConnection, created ? HttpStatus.CREATED : HttpStatus.OK);
     }
 
+    // Ends the friendship on both sides
     @DeleteMapping("/{userId}/friends/{friendId}")
     public ResponseEntity<Void> unfriend(@PathVariable String userId, @PathVariable String friendId) {
-        // Check if a document with the userId exists
-        UserConnection existingConnection = userConnectionRepository.findByUserId(userId);
-        if (existingConnection != null) {
-            // Remove the friendId from the list of friendIds
-            List<String> currentFriendIds = existingConnection.getFriendIds();
-            currentFriendIds.remove(friendId);
-            existingConnection.setFriendIds(currentFriendIds);
-            userConnectionRepository.save(existingConnection);
+        if (userConnectionService.unfriend(userId, friendId)) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         } else {
             // No existing document, return 404
@@ -66,5 +110,29 @@ public class UserConnectionController {
         }
     }
 
+    // id -> whether the user is friends with them, for up to connections.check.max-ids ids
+    @GetMapping("/{userId}/friends/check")
+    public ResponseEntity<Map<String, Boolean>> checkFriends(@PathVariable String userId, @RequestParam List<String> ids) {
+        if (ids.size() > maxCheckIds) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Set<String> friends = userConnectionService.friendsAmong(userId, ids);
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        ids.forEach(id -> result.put(id, friends.contains(id)));
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    // Friends of friends, most friends in common first
+    @GetMapping("/{userId}/suggestions")
+    public ResponseEntity<List<FriendSuggestion>> getSuggestions(@PathVariable String userId,
+                                                                 @RequestParam(defaultValue = "20") int limit) {
+        int size = Math.max(1, Math.min(limit, maxSuggestions));
+        return new ResponseEntity<>(socialGraphService.suggestions(userId, size), HttpStatus.OK);
+    }
 
+    @GetMapping("/{userId}/mutual/{otherId}")
+    public ResponseEntity<Map<String, Object>> getMutualFriends(@PathVariable String userId, @PathVariable String otherId) {
+        List<String> mutual = socialGraphService.mutualFriends(userId, otherId);
+        return new ResponseEntity<>(Map.of("count", mutual.size(), "userIds", mutual), HttpStatus.OK);
+    }
 }
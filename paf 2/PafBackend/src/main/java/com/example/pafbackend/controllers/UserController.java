@@ -2,7 +2,11 @@ package com.example.pafbackend.controllers;
 
 import com.example.pafbackend.models.User;
 import com.example.pafbackend.repositories.UserRepository;
+import com.example.pafbackend.services.CascadeDeletionService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -11,9 +15,11 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserRepository userRepository;
+    private final CascadeDeletionService cascadeDeletionService;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, CascadeDeletionService cascadeDeletionService) {
         this.userRepository = userRepository;
+        this.cascadeDeletionService = cascadeDeletionService;
     }
 
     @GetMapping("/{id}")
@@ -22,4 +28,19 @@ public class UserController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    // The account goes at once; everything the user made is removed in the background.
+    // Only the user themselves or an admin may do this
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteUser(@PathVariable String id, @AuthenticationPrincipal User caller,
+                                           Authentication authentication) {
+        boolean admin = authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        if (!admin && (caller == null || !id.equals(caller.getId()))) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        return cascadeDeletionService.deleteUser(id)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.notFound().build();
+    }
 }
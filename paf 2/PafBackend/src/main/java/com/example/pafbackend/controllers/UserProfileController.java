@@ -45,6 +45,7 @@ public class UserProfileController {
     @PutMapping("/{id}")
     public ResponseEntity<UserProfile> updateUserProfile(@PathVariable String id, @RequestBody UserProfile userProfileDetails) {
         return userProfileRepository.findById(id).map(existingUserProfile -> {
+            existingUserProfile.setDisplayName(userProfileDetails.getDisplayName());
             existingUserProfile.setImage(userProfileDetails.getImage());
             existingUserProfile.setBiography(userProfileDetails.getBiography());
             existingUserProfile.setFitnessGoals(userProfileDetails.getFitnessGoals());
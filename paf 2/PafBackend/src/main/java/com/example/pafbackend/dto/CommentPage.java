@@ -0,0 +1,17 @@
+package com.example.pafbackend.dto;
+
+import com.example.pafbackend.models.Comment;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CommentPage {
+    // Oldest first
+    private List<Comment> items;
+    // Pass as ?before= for the previous (older) page and as ?after= for the next (newer) one
+    private String olderCursor;
+    private String newerCursor;
+    private boolean hasOlder;
+    private boolean hasNewer;
+}
@@ -0,0 +1,14 @@
+package com.example.pafbackend.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+// A row of a followers or following page: the other user with the profile fields a list shows
+@Data
+public class ConnectionProfile {
+    private String userId;
+    private String displayName;
+    private String image;
+    private Date connectedAt;
+}
@@ -0,0 +1,13 @@
+package com.example.pafbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendSuggestion {
+    private String userId;
+    private int mutualFriends;
+}
@@ -0,0 +1,15 @@
+package com.example.pafbackend.dto;
+
+import com.example.pafbackend.models.GroupPost;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class GroupFeedPage {
+    // Only on the first page; pinned posts are left out of items
+    private List<GroupPost> pinned;
+    private List<GroupPost> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,11 @@
+package com.example.pafbackend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class HydrateRequest {
+    private String viewerId;
+    private List<String> postIds;
+}
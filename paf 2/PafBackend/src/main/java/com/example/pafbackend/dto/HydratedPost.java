@@ -0,0 +1,19 @@
+package com.example.pafbackend.dto;
+
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.Media;
+import com.example.pafbackend.models.Post;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class HydratedPost {
+    private Post post;
+    private long likeCount;
+    private long commentCount;
+    private boolean likedByViewer;
+    private boolean bookmarkedByViewer;
+    private List<Media> media;
+    private List<Comment> latestComments;
+}
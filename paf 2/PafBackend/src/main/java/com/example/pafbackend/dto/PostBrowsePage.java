@@ -0,0 +1,16 @@
+package com.example.pafbackend.dto;
+
+import com.example.pafbackend.models.Post;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class PostBrowsePage {
+    private List<Post> items;
+    private String nextCursor;
+    private boolean hasMore;
+    // facet name -> value -> count; only on the first page
+    private Map<String, Map<String, Long>> facets;
+}
@@ -0,0 +1,47 @@
+package com.example.pafbackend.dto;
+
+import com.example.pafbackend.models.Post;
+import lombok.Data;
+
+import java.util.Date;
+
+// What a thumbnail grid needs from a post; no instructions, ingredients or full media lists
+@Data
+public class PostSummary {
+    private String id;
+    private String userId;
+    private Date timestamp;
+    private String title;
+    private String cuisineType;
+    private Integer cookingMinutes;
+    private String difficulty;
+    private long likeCount;
+    private long commentCount;
+    private String thumbnailUrl;
+    private String thumbnailType;
+
+    // Expects a post read with PostRepositoryCustom.SUMMARY_FIELDS and the media arrays sliced to one element
+    public static PostSummary from(Post post) {
+        PostSummary summary = new PostSummary();
+        summary.setId(post.getId());
+        summary.setUserId(post.getUserId());
+        summary.setTimestamp(post.getTimestamp());
+        summary.setTitle(post.getTitle());
+        summary.setCuisineType(post.getCuisineType());
+        summary.setCookingMinutes(post.getCookingMinutes());
+        summary.setDifficulty(post.getDifficulty());
+        summary.setLikeCount(post.getLikeCount());
+        summary.setCommentCount(post.getCommentCount());
+        if (post.getMediaLinks() != null && !post.getMediaLinks().isEmpty()) {
+            summary.setThumbnailUrl(post.getMediaLinks().get(0));
+            if (post.getMediaTypes() != null && !post.getMediaTypes().isEmpty()) {
+                summary.setThumbnailType(post.getMediaTypes().get(0));
+            }
+        } else {
+            // Posts from before mediaLinks only have the single legacy fields
+            summary.setThumbnailUrl(post.getMediaLink());
+            summary.setThumbnailType(post.getMediaType());
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.pafbackend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class RecipeMatch {
+    private String source; // post, skillShare or mealPlan
+    private String id;
+    private String title;
+    private double coverage;
+    private List<String> matchedIngredients;
+    private List<String> missingIngredients;
+}
@@ -3,10 +3,12 @@ package com.example.pafbackend.models;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
 @Document(collection = "bookmarks")
+@CompoundIndex(name = "user_resource_idx", def = "{'userId': 1, 'resourceId': 1}")
 @Getter
 @Setter
 public class Bookmark {
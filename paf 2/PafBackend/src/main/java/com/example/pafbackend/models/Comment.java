@@ -1,10 +1,20 @@
 package com.example.pafbackend.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
 @Document(collection = "comments")
+@CompoundIndexes({
+    // Serves the latest-comments preview; postId lookups use its prefix
+    @CompoundIndex(name = "post_time_idx", def = "{'postId': 1, 'timestamp': 1, '_id': 1}"),
+    // Pages of top-level comments (parentId null) and of the direct replies to one comment
+    @CompoundIndex(name = "post_parent_time_idx", def = "{'postId': 1, 'parentId': 1, 'timestamp': 1, '_id': 1}"),
+    // A whole sub-thread is one prefix range on path
+    @CompoundIndex(name = "path_idx", def = "{'path': 1}")
+})
 public class Comment {
     @Id
     private String id;
@@ -12,6 +22,13 @@ public class Comment {
     private String userId;
     private String commentText;
     private Date timestamp;
+    // Null for top-level comments
+    private String parentId;
+    // Ids from the top-level comment down to this one, each followed by '/'
+    private String path;
+    private int depth;
+    // Direct replies only
+    private long replyCount;
 
 
 
@@ -57,6 +74,38 @@ public class Comment {
         this.timestamp = timestamp;
     }
 
+    public String getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(String parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public void setReplyCount(long replyCount) {
+        this.replyCount = replyCount;
+    }
+
     public Comment(String id, String postId, String userId, String commentText, Date timestamp) {
         this.id = id;
         this.postId = postId;
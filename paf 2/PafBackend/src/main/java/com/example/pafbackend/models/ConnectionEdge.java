@@ -0,0 +1,28 @@
+package com.example.pafbackend.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// One row per entry in a user's friendIds: userId lists friendId. Indexed from both ends so either side pages cheaply
+@Document(collection = "connectionEdges")
+@CompoundIndexes({
+    @CompoundIndex(name = "user_friend_unique_idx", def = "{'userId': 1, 'friendId': 1}", unique = true),
+    // Following: the users a user lists, newest first
+    @CompoundIndex(name = "user_time_idx", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+    // Followers: the users who list a user, newest first
+    @CompoundIndex(name = "friend_time_idx", def = "{'friendId': 1, 'createdAt': -1, '_id': -1}")
+})
+@Getter
+@Setter
+public class ConnectionEdge {
+    @Id
+    private String id;
+    private String userId;
+    private String friendId;
+    private Date createdAt;
+}
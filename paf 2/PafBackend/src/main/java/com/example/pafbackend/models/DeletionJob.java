@@ -0,0 +1,62 @@
+package com.example.pafbackend.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The background removal of everything that hung off a deleted post, group
+ * or user. The root document itself is already gone; the job walks its
+ * steps in order, and {@code step} is where a crashed run picks up again.
+ */
+@Document(collection = "deletionJobs")
+@CompoundIndex(name = "status_lease_idx", def = "{'status': 1, 'leaseUntil': 1, 'createdAt': 1}")
+@Getter
+@Setter
+public class DeletionJob {
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED"; // gave up after deletion.max-attempts
+
+    public static final String POST = "post";
+    public static final String GROUP = "group";
+    public static final String USER = "user";
+
+    @Id
+    private String id;
+    private String rootType; // "post", "group" or "user"
+    private String rootId;
+    private String status;
+    private String step; // the step in progress; the ones before it are done
+    private Map<String, Long> removed; // documents removed so far, by collection
+    private List<String> files; // uploads to delete last, recorded before the documents naming them go
+    private Date createdAt;
+    private Date finishedAt;
+    private int attempts;
+    private String lastError;
+    private String owner; // node running the job
+    private Date leaseUntil; // null or past means any node may take it
+
+    public DeletionJob() {
+        this.removed = new HashMap<>();
+        this.files = new ArrayList<>();
+    }
+
+    public static DeletionJob of(String rootType, String rootId) {
+        DeletionJob job = new DeletionJob();
+        job.setRootType(rootType);
+        job.setRootId(rootId);
+        job.setStatus(PENDING);
+        job.setCreatedAt(new Date());
+        return job;
+    }
+}
@@ -4,7 +4,6 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -21,9 +20,12 @@ public class Group {
     private String imageUrl;
     private List<String> tags;
     private List<String> rules;
-    private List<String> memberIds = new ArrayList<>();
-    private List<String> adminIds = new ArrayList<>();
-    private boolean isPublic = true;
+    // Kept in step with groupMemberships by GroupMembershipService
+    private long memberCount;
+    // Kept in step with groupPosts by GroupPostService
+    private long postCount;
+    // Boxed so a partial update can tell a missing value from false
+    private Boolean isPublic = true;
     
     public Group() {
         this.createdAt = new Date();
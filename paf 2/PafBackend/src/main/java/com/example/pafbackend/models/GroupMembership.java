@@ -0,0 +1,32 @@
+package com.example.pafbackend.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// One row per (group, member), replacing the memberIds and adminIds arrays on Group
+@Document(collection = "groupMemberships")
+@CompoundIndexes({
+    @CompoundIndex(name = "group_user_unique_idx", def = "{'groupId': 1, 'userId': 1}", unique = true),
+    // Members of a group in join order
+    @CompoundIndex(name = "group_joined_idx", def = "{'groupId': 1, 'joinedAt': 1, '_id': 1}"),
+    // Groups a user belongs to
+    @CompoundIndex(name = "user_joined_idx", def = "{'userId': 1, 'joinedAt': -1}")
+})
+@Getter
+@Setter
+public class GroupMembership {
+    public static final String MEMBER = "member";
+    public static final String ADMIN = "admin";
+
+    @Id
+    private String id;
+    private String groupId;
+    private String userId;
+    private String role;
+    private Date joinedAt;
+}
@@ -3,10 +3,17 @@ package com.example.pafbackend.models;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
 @Document(collection = "groupPosts")
+@CompoundIndexes({
+    // A group's feed, newest first, paged by (timestamp, id)
+    @CompoundIndex(name = "group_time_idx", def = "{'groupId': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "group_pinned_idx", def = "{'groupId': 1, 'pinned': 1, 'pinnedAt': -1}")
+})
 @Getter
 @Setter
 public class GroupPost {
@@ -18,8 +25,11 @@ public class GroupPost {
     private Date timestamp;
     private String mediaUrl;
     private String mediaType;
+    // Pinned posts are shown above the feed, most recently pinned first
+    private boolean pinned;
+    private Date pinnedAt;
     
     public GroupPost() {
         this.timestamp = new Date();
     }
-}
\ No newline at end of file
+}
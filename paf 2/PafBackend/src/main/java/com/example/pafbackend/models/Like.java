@@ -1,12 +1,14 @@
 package com.example.pafbackend.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "likes")
 public class Like {
     @Id
     private String id;
+    @Indexed
     private String postId;
 
     public String getId() {
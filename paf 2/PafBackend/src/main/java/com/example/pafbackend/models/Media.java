@@ -1,12 +1,14 @@
 package com.example.pafbackend.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "media")
 public class Media {
     @Id
     private String id;
+    @Indexed
     private String postId;
     private String mediaType;
     private String mediaUrl;
@@ -3,10 +3,22 @@ package com.example.pafbackend.models;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 @Document(collection = "notifications")
+@CompoundIndexes({
+    @CompoundIndex(name = "user_time_idx", def = "{'userId': 1, 'timestamp': -1}"),
+    // Unread lists, unread counts and mark-all-as-read
+    @CompoundIndex(name = "user_read_time_idx", def = "{'userId': 1, 'read': 1, 'timestamp': -1}"),
+    // The retention job's oldest-first batches across all users
+    @CompoundIndex(name = "time_idx", def = "{'timestamp': 1}")
+})
 @Getter
 @Setter
 public class Notification {
@@ -20,9 +32,16 @@ public class Notification {
     private String actionUserId; // ID of the user who triggered the notification
     private Date timestamp;
     private boolean read;
+    // Set on notifications that merge repeated activity: userId:type:sourceId:window
+    @Indexed(unique = true, sparse = true)
+    private String coalesceKey;
+    private long count; // how many actions were merged into this one
+    private List<String> actionUserIds; // the most recent actors, newest last
 
     public Notification() {
         this.timestamp = new Date();
         this.read = false;
+        this.count = 1;
+        this.actionUserIds = new ArrayList<>();
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.example.pafbackend.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A domain event stored in the same transaction as the write that caused it
+ * and delivered to the consumers afterwards. Events of one aggregate are
+ * delivered in creation order.
+ */
+@Document(collection = "outboxEvents")
+@CompoundIndexes({
+    @CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1, '_id': 1}"),
+    // Finds the events waiting for a retry, whose aggregates are held back
+    @CompoundIndex(name = "status_next_attempt_idx", def = "{'status': 1, 'nextAttemptAt': 1}")
+})
+@Getter
+@Setter
+public class OutboxEvent {
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED"; // gave up after outbox.max-attempts
+
+    public static final String LIKE_ADDED = "LikeAdded";
+    public static final String LIKE_REMOVED = "LikeRemoved";
+    public static final String COMMENT_ADDED = "CommentAdded";
+    public static final String COMMENT_REMOVED = "CommentRemoved";
+
+    @Id
+    private String id;
+    private String type;
+    private String aggregateType; // "post", ...
+    private String aggregateId;
+    private Map<String, Object> payload;
+    private Date createdAt;
+    private String status;
+    private int attempts;
+    private Date nextAttemptAt; // null means due now
+    private String lastError;
+    private List<String> completedConsumers; // consumers already done, skipped on retry
+    private Date processedAt;
+
+    public OutboxEvent() {
+        this.completedConsumers = new ArrayList<>();
+    }
+
+    public static OutboxEvent of(String type, String aggregateType, String aggregateId, Map<String, Object> payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(aggregateId);
+        event.setPayload(payload);
+        event.setCreatedAt(new Date());
+        event.setStatus(PENDING);
+        return event;
+    }
+}
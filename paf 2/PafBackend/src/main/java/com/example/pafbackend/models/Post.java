@@ -3,7 +3,10 @@ package com.example.pafbackend.models;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
@@ -11,6 +14,18 @@ import java.util.ArrayList;
 @Getter
 @Setter
 @Document(collection = "posts")
+@CompoundIndexes({
+    @CompoundIndex(name = "feed_idx", def = "{'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_feed_idx", def = "{'userId': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "cuisine_feed_idx", def = "{'cuisineType': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "fan_out_on_read_idx", def = "{'fanOutOnRead': 1, 'userId': 1, 'timestamp': -1, '_id': -1}",
+            partialFilter = "{'fanOutOnRead': true}"),
+    // Equality keys, then the sort keys, then the cookingMinutes range, so a filtered browse page is one index walk
+    @CompoundIndex(name = "browse_idx",
+            def = "{'cuisineType': 1, 'difficulty': 1, 'timestamp': -1, '_id': -1, 'cookingMinutes': 1}"),
+    @CompoundIndex(name = "difficulty_browse_idx",
+            def = "{'difficulty': 1, 'timestamp': -1, '_id': -1, 'cookingMinutes': 1}")
+})
 public class Post {
     @Id
     private String id;
@@ -23,6 +38,20 @@ public class Post {
     private String cookingTime;
     private String difficultyLevel;
     private String cuisineType;
+
+    // Parsed from cookingTime and difficultyLevel on write, for range and equality filters.
+    // Written even when null, so a present field tells the startup backfill the post was already parsed
+    @Field(write = Field.Write.ALWAYS)
+    private Integer cookingMinutes;
+    @Field(write = Field.Write.ALWAYS)
+    private String difficulty;
+
+    // Set when the author has too many followers to fan out to; readers merge these in at read time
+    private boolean fanOutOnRead;
+
+    // Maintained with $inc by the like and comment endpoints
+    private long likeCount;
+    private long commentCount;
     
     // Replace single mediaLink/mediaType with lists
     private List<String> mediaLinks = new ArrayList<>();
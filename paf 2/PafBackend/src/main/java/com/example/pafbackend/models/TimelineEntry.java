@@ -0,0 +1,28 @@
+package com.example.pafbackend.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// One row per (reader, post) written when a post is fanned out to its author's followers
+@Document(collection = "timelines")
+@CompoundIndexes({
+    @CompoundIndex(name = "owner_feed_idx", def = "{'ownerId': 1, 'timestamp': -1, 'postId': -1}"),
+    @CompoundIndex(name = "owner_post_idx", def = "{'ownerId': 1, 'postId': 1}", unique = true)
+})
+@Getter
+@Setter
+public class TimelineEntry {
+    @Id
+    private String id;
+    private String ownerId;
+    @Indexed
+    private String postId;
+    private String authorId;
+    private Date timestamp;
+}
@@ -1,6 +1,7 @@
 package com.example.pafbackend.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -11,6 +12,7 @@ public class UserConnection {
     @Id
     private String id;
     private String userId;
+    @Indexed
     private List<String> friendIds = new ArrayList<>();
 
     public UserConnection() {}
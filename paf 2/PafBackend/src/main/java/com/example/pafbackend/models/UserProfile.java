@@ -1,13 +1,16 @@
 package com.example.pafbackend.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "userProfiles")
 public class UserProfile {
     @Id
     private String id;
+    @Indexed
     private String userId;
+    private String displayName;
     private String image;
     private String biography;
     private String fitnessGoals;
@@ -31,6 +34,14 @@ public class UserProfile {
         this.userId = userId;
     }
 
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
     public String getImage() {
         return image;
     }
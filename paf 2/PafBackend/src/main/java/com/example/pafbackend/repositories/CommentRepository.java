@@ -8,5 +8,5 @@ import java.util.List;
 
 @Repository
 public interface CommentRepository extends MongoRepository<Comment, String> {
-    List<Comment> findByPostId(String postId);
+    List<Comment> findByPostIdOrderByTimestampAscIdAsc(String postId);
 }
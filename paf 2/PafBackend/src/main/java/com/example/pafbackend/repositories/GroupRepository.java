@@ -9,6 +9,5 @@ import java.util.List;
 @Repository
 public interface GroupRepository extends MongoRepository<Group, String> {
     List<Group> findByCreatorId(String creatorId);
-    List<Group> findByMemberIdsContaining(String userId);
     List<Group> findByIsPublicTrue();
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.pafbackend.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position inside a result set ordered by (timestamp, id). Clients only ever see
+ * the encoded form, so the layout can change without breaking them.
+ */
+public final class KeysetCursor {
+
+    private final Date timestamp;
+    private final String id;
+
+    private KeysetCursor(Date timestamp, String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(Date timestamp, String id) {
+        return new KeysetCursor(timestamp, id);
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            long millis = Long.parseLong(raw.substring(0, separator));
+            return new KeysetCursor(new Date(millis), raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String raw = timestamp.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // Rows that come after this cursor when sorting newest first
+    public Criteria before(String timestampField, String idField) {
+        return new Criteria().orOperator(
+                Criteria.where(timestampField).lt(timestamp),
+                new Criteria().andOperator(
+                        Criteria.where(timestampField).is(timestamp),
+                        Criteria.where(idField).lt(id)));
+    }
+
+    // Rows that come after this cursor when sorting oldest first
+    public Criteria after(String timestampField, String idField) {
+        return new Criteria().orOperator(
+                Criteria.where(timestampField).gt(timestamp),
+                new Criteria().andOperator(
+                        Criteria.where(timestampField).is(timestamp),
+                        Criteria.where(idField).gt(id)));
+    }
+
+    public static Criteria and(Criteria filter, Criteria cursor) {
+        if (filter == null) {
+            return cursor;
+        }
+        if (cursor == null) {
+            return filter;
+        }
+        return new Criteria().andOperator(filter, cursor);
+    }
+}
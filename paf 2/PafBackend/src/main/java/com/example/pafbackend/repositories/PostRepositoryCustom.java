@@ -0,0 +1,21 @@
+package com.example.pafbackend.repositories;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.PostSummary;
+import com.example.pafbackend.models.Post;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface PostRepositoryCustom {
+    List<String> SUMMARY_FIELDS = List.of("userId", "timestamp", "title", "cuisineType", "cookingMinutes",
+            "difficulty", "likeCount", "commentCount", "mediaLink", "mediaType");
+
+    CursorPage<Post> findPage(Criteria filter, String cursor, int limit);
+
+    CursorPage<PostSummary> findSummaryPage(Criteria filter, String cursor, int limit);
+
+    CursorPage<Map<String, Object>> findFieldsPage(Criteria filter, String cursor, int limit, Set<String> fields);
+}
@@ -0,0 +1,65 @@
+package com.example.pafbackend.repositories;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.PostSummary;
+import com.example.pafbackend.models.Post;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PostRepositoryImpl implements PostRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final SparseFieldset sparseFieldset;
+
+    public PostRepositoryImpl(MongoTemplate mongoTemplate, SparseFieldset sparseFieldset) {
+        this.mongoTemplate = mongoTemplate;
+        this.sparseFieldset = sparseFieldset;
+    }
+
+    @Override
+    public CursorPage<Post> findPage(Criteria filter, String cursor, int limit) {
+        List<Post> posts = mongoTemplate.find(pageQuery(filter, cursor, limit), Post.class);
+        return CursorPage.of(posts, limit, post -> KeysetCursor.of(post.getTimestamp(), post.getId()).encode());
+    }
+
+    // Same page as findPage, reading only the summary fields and the first media item
+    @Override
+    public CursorPage<PostSummary> findSummaryPage(Criteria filter, String cursor, int limit) {
+        Query query = pageQuery(filter, cursor, limit);
+        SUMMARY_FIELDS.forEach(query.fields()::include);
+        query.fields().slice("mediaLinks", 1).slice("mediaTypes", 1);
+
+        List<PostSummary> summaries = mongoTemplate.find(query, Post.class).stream().map(PostSummary::from).toList();
+        return CursorPage.of(summaries, limit,
+                summary -> KeysetCursor.of(summary.getTimestamp(), summary.getId()).encode());
+    }
+
+    @Override
+    public CursorPage<Map<String, Object>> findFieldsPage(Criteria filter, String cursor, int limit, Set<String> fields) {
+        // The cursor is built from the timestamp, so it is read even when not requested
+        Query query = sparseFieldset.project(pageQuery(filter, cursor, limit), fields);
+        query.fields().include("timestamp");
+
+        List<Post> posts = mongoTemplate.find(query, Post.class);
+        CursorPage<Post> page = CursorPage.of(posts, limit,
+                post -> KeysetCursor.of(post.getTimestamp(), post.getId()).encode());
+        return new CursorPage<>(sparseFieldset.toMaps(page.getItems(), Post.class, fields), page.getNextCursor());
+    }
+
+    // Newest first, seeking past the cursor so each page is an index range scan
+    private Query pageQuery(Criteria filter, String cursor, int limit) {
+        Criteria position = cursor == null || cursor.isBlank()
+                ? null
+                : KeysetCursor.decode(cursor).before("timestamp", "id");
+        Criteria criteria = KeysetCursor.and(filter, position);
+
+        Query query = criteria == null ? new Query() : new Query(criteria);
+        return query.with(Sort.by(Sort.Direction.DESC, "timestamp", "id")).limit(limit + 1);
+    }
+}
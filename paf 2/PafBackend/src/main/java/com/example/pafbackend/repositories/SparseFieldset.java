@@ -0,0 +1,91 @@
+package com.example.pafbackend.repositories;
+
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Support for {@code ?fields=a,b,c} on list endpoints: only the named fields
+ * are read from Mongo and written to the response, which is a list of maps
+ * that always carries {@code id}.
+ *
+ * Field names are the entity's property names and are checked against its
+ * mapping, so a request cannot project fields the entity does not have.
+ */
+@Component
+public class SparseFieldset {
+
+    private final MongoTemplate mongoTemplate;
+
+    public SparseFieldset(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * The requested fields in request order, or null when the parameter is
+     * absent and the full document should be returned.
+     *
+     * @throws IllegalArgumentException if a name is not a property of the entity
+     */
+    public Set<String> parse(String fields, Class<?> type) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        MongoPersistentEntity<?> entity = entity(type);
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (entity.getPersistentProperty(name) == null) {
+                throw new IllegalArgumentException("Unknown field '" + name + "' for " + type.getSimpleName());
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    public <T> List<Map<String, Object>> find(Criteria criteria, Class<T> type, Set<String> fields) {
+        Query query = criteria == null ? new Query() : Query.query(criteria);
+        return toMaps(mongoTemplate.find(project(query, fields), type), type, fields);
+    }
+
+    public Query project(Query query, Set<String> fields) {
+        fields.forEach(query.fields()::include);
+        return query;
+    }
+
+    public <T> List<Map<String, Object>> toMaps(List<T> entities, Class<T> type, Set<String> fields) {
+        MongoPersistentEntity<?> entity = entity(type);
+        MongoPersistentProperty idProperty = entity.getIdProperty();
+        List<Map<String, Object>> maps = new ArrayList<>(entities.size());
+        for (T bean : entities) {
+            PersistentPropertyAccessor<T> accessor = entity.getPropertyAccessor(bean);
+            Map<String, Object> map = new LinkedHashMap<>();
+            if (idProperty != null) {
+                map.put(idProperty.getName(), accessor.getProperty(idProperty));
+            }
+            for (String field : fields) {
+                map.put(field, accessor.getProperty(entity.getRequiredPersistentProperty(field)));
+            }
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    private MongoPersistentEntity<?> entity(Class<?> type) {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+    }
+}
@@ -0,0 +1,651 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Bookmark;
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.ConnectionEdge;
+import com.example.pafbackend.models.DeletionJob;
+import com.example.pafbackend.models.Group;
+import com.example.pafbackend.models.GroupMembership;
+import com.example.pafbackend.models.GroupPost;
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.MealPlan;
+import com.example.pafbackend.models.Media;
+import com.example.pafbackend.models.Notification;
+import com.example.pafbackend.models.OutboxEvent;
+import com.example.pafbackend.models.Post;
+import com.example.pafbackend.models.SkillShare;
+import com.example.pafbackend.models.StoryStatusUpdate;
+import com.example.pafbackend.models.TimelineEntry;
+import com.example.pafbackend.models.User;
+import com.example.pafbackend.models.UserConnection;
+import com.example.pafbackend.models.UserProfile;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes posts, groups and users together with everything that refers to
+ * them.
+ *
+ * The root document is removed at once, in the same transaction that records
+ * a {@link DeletionJob}, so it disappears from every read straight away. The
+ * dependents are removed afterwards on a background worker, one collection at
+ * a time, in batches of {@code deletion.batch-size} ids with a pause of
+ * {@code deletion.batch-pause-ms} between them, so a user with years of
+ * activity does not saturate Mongo. Uploaded files are recorded on the job
+ * before the documents naming them go, and deleted last.
+ *
+ * A running job holds a lease that every batch renews, along with its
+ * progress. A job whose node died is taken over once the lease runs out and
+ * resumes at the step it was on; every step only removes what is still there,
+ * so repeating part of one is harmless. Failed jobs retry with exponential
+ * backoff and are marked FAILED after {@code deletion.max-attempts}.
+ *
+ * Like counts of posts a deleted user had liked are recounted as their likes
+ * go. A deleted user's comments are removed with CommentRemoved events, which
+ * move comment counts, and the replyCount of each comment they answered drops
+ * with them. Replies by other users to a deleted user's comments stay.
+ */
+@Slf4j
+@Service
+public class CascadeDeletionService {
+
+    private static final String UPLOAD_PATH = "/api/uploads/";
+    private static final String FILES_STEP = "files";
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxService outboxService;
+    private final PostCounterService postCounterService;
+    private final GroupMembershipService groupMembershipService;
+    private final GroupPostService groupPostService;
+    private final GroupDiscoveryService groupDiscoveryService;
+    private final SocialGraphService socialGraphService;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeMatchService recipeMatchService;
+    private final PostBrowseService postBrowseService;
+    private final TrendingService trendingService;
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("cascade-delete-"));
+    private final AtomicBoolean pollQueued = new AtomicBoolean();
+
+    private final Counter completed;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter filesRemoved;
+    private final Timer duration;
+    private final AtomicLong backlog = new AtomicLong();
+
+    @Value("${deletion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${deletion.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    @Value("${deletion.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${deletion.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${deletion.retry-base-ms:5000}")
+    private long retryBaseMs;
+
+    @Value("${deletion.retry-max-ms:600000}")
+    private long retryMaxMs;
+
+    @Value("${deletion.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    private record Step(String name, Consumer<DeletionJob> action) {
+    }
+
+    // One collection's share of a cascade; before sees each batch while it still exists, after once it is gone
+    private record Target(Class<?> type, Criteria criteria, List<String> fields,
+                          BiConsumer<DeletionJob, List<Document>> before, Consumer<List<Document>> after) {
+        Target(Class<?> type, Criteria criteria) {
+            this(type, criteria, List.of(), null, null);
+        }
+    }
+
+    // The worker was interrupted by shutdown
+    private static final class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Another node took the job over after our lease ran out
+    private static final class LeaseLost extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public CascadeDeletionService(MongoTemplate mongoTemplate, OutboxService outboxService,
+                                  PostCounterService postCounterService, GroupMembershipService groupMembershipService,
+                                  GroupPostService groupPostService, GroupDiscoveryService groupDiscoveryService,
+                                  SocialGraphService socialGraphService, RecipeSearchIndex recipeSearchIndex,
+                                  RecipeMatchService recipeMatchService, PostBrowseService postBrowseService,
+                                  TrendingService trendingService, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxService = outboxService;
+        this.postCounterService = postCounterService;
+        this.groupMembershipService = groupMembershipService;
+        this.groupPostService = groupPostService;
+        this.groupDiscoveryService = groupDiscoveryService;
+        this.socialGraphService = socialGraphService;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeMatchService = recipeMatchService;
+        this.postBrowseService = postBrowseService;
+        this.trendingService = trendingService;
+        this.meterRegistry = meterRegistry;
+        this.completed = meterRegistry.counter("deletion.jobs.completed");
+        this.retried = meterRegistry.counter("deletion.jobs.retried");
+        this.failed = meterRegistry.counter("deletion.jobs.failed");
+        this.filesRemoved = meterRegistry.counter("deletion.files.removed");
+        this.duration = meterRegistry.timer("deletion.job.duration");
+        Gauge.builder("deletion.backlog", backlog, AtomicLong::get).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            mongoTemplate.indexOps(DeletionJob.class).ensureIndex(new Index()
+                    .on("finishedAt", Sort.Direction.ASC)
+                    .expire(Duration.ofHours(retentionHours))
+                    .named("finished_ttl_idx"));
+        } catch (UncategorizedMongoDbException e) {
+            log.warn("Could not create the deletion job retention TTL index", e);
+        }
+        wake();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        worker.shutdownNow();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Scheduled(fixedDelayString = "${deletion.poll-interval-ms:5000}")
+    public void scheduledPoll() {
+        wake();
+    }
+
+    /** Removes the post now and its likes, comments, media, bookmarks, notifications and uploads in the background. */
+    public boolean deletePost(Post post) {
+        DeletionJob job = DeletionJob.of(DeletionJob.POST, post.getId());
+        collectUploads(post.getMediaLinks(), job.getFiles());
+        collectUploads(post.getMediaLink(), job.getFiles());
+        if (!removeRoot(Post.class, post.getId(), job)) {
+            return false;
+        }
+        forgetPost(post.getId());
+        postBrowseService.invalidateFacets();
+        return true;
+    }
+
+    /** Removes the group now and its posts, memberships, notifications and uploads in the background. */
+    public boolean deleteGroup(Group group) {
+        DeletionJob job = DeletionJob.of(DeletionJob.GROUP, group.getId());
+        collectUploads(group.getImageUrl(), job.getFiles());
+        if (!removeRoot(Group.class, group.getId(), job)) {
+            return false;
+        }
+        groupPostService.invalidate(group.getId());
+        groupDiscoveryService.invalidate();
+        return true;
+    }
+
+    /**
+     * Removes the user account now and, in the background, everything the
+     * user made: posts, groups they created, likes, comments, bookmarks,
+     * notifications, connections, memberships, profile and uploads.
+     */
+    public boolean deleteUser(String userId) {
+        return removeRoot(User.class, userId, DeletionJob.of(DeletionJob.USER, userId));
+    }
+
+    private boolean removeRoot(Class<?> type, String id, DeletionJob job) {
+        boolean removed = outboxService.inTransaction(() -> {
+            if (mongoTemplate.remove(Query.query(Criteria.where("id").is(id)), type).getDeletedCount() == 0) {
+                return false;
+            }
+            mongoTemplate.insert(job);
+            return true;
+        });
+        if (removed) {
+            wake();
+        }
+        return removed;
+    }
+
+    private void wake() {
+        if (pollQueued.compareAndSet(false, true)) {
+            try {
+                worker.execute(this::poll);
+            } catch (RejectedExecutionException e) {
+                pollQueued.set(false);
+            }
+        }
+    }
+
+    private void poll() {
+        pollQueued.set(false);
+        try {
+            backlog.set(mongoTemplate.count(Query.query(Criteria.where("status")
+                    .in(DeletionJob.PENDING, DeletionJob.RUNNING)), DeletionJob.class));
+            DeletionJob job;
+            while (!Thread.currentThread().isInterrupted() && (job = claim()) != null) {
+                run(job);
+            }
+        } catch (RuntimeException e) {
+            log.error("Cascade deletion poll failed", e);
+        }
+    }
+
+    // Oldest job that nobody holds, or whose holder stopped renewing
+    private DeletionJob claim() {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("status").in(DeletionJob.PENDING, DeletionJob.RUNNING)
+                        .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        Update update = new Update().set("status", DeletionJob.RUNNING).set("owner", nodeId).set("leaseUntil", lease());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), DeletionJob.class);
+    }
+
+    private void run(DeletionJob job) {
+        List<Step> steps = steps(job);
+        int from = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).name().equals(job.getStep())) {
+                from = i;
+            }
+        }
+        try {
+            for (Step step : steps.subList(from, steps.size())) {
+                if (!step.name().equals(job.getStep())) {
+                    renew(job, new Update().set("step", step.name()));
+                    job.setStep(step.name());
+                }
+                step.action().accept(job);
+            }
+            finish(job);
+        } catch (LeaseLost e) {
+            log.warn("Deletion job {} was taken over by another node", job.getId());
+        } catch (Stopped e) {
+            release(job);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                release(job);
+            } else {
+                retry(job, e);
+            }
+        }
+    }
+
+    private List<Step> steps(DeletionJob job) {
+        String rootId = job.getRootId();
+        List<Step> steps = new ArrayList<>();
+        switch (job.getRootType()) {
+            case DeletionJob.POST -> postTargets(List.of(rootId)).forEach(target ->
+                    steps.add(new Step(collection(target.type()), running -> drain(running, target))));
+            case DeletionJob.GROUP -> {
+                steps.add(drainStep("groupPosts", new Target(GroupPost.class, Criteria.where("groupId").is(rootId),
+                        List.of("mediaUrl"), uploadsIn("mediaUrl"), null)));
+                steps.add(drainStep("memberships", new Target(GroupMembership.class, Criteria.where("groupId").is(rootId))));
+                steps.add(drainStep("notifications", new Target(Notification.class,
+                        Criteria.where("sourceType").is("group").and("sourceId").is(rootId))));
+            }
+            case DeletionJob.USER -> userSteps(rootId).forEach(steps::add);
+            default -> throw new IllegalStateException("Unknown deletion root type " + job.getRootType());
+        }
+        steps.add(new Step(FILES_STEP, this::removeFiles));
+        return steps;
+    }
+
+    private List<Step> userSteps(String userId) {
+        return List.of(
+                new Step("posts", job -> removePosts(job, userId)),
+                new Step("groups", job -> removeGroups(job, userId)),
+                drainStep("likes", new Target(Like.class, Criteria.where("userId").is(userId), List.of("postId"), null,
+                        batch -> postCounterService.recountLikes(valuesOf(batch, "postId")))),
+                new Step("comments", job -> removeComments(job, userId)),
+                drainStep("bookmarks", new Target(Bookmark.class, Criteria.where("userId").is(userId))),
+                drainStep("notifications", new Target(Notification.class, new Criteria().orOperator(
+                        Criteria.where("userId").is(userId), Criteria.where("actionUserId").is(userId)))),
+                drainStep("timelines", new Target(TimelineEntry.class, Criteria.where("ownerId").is(userId))),
+                new Step("connections", job -> removeConnections(job, userId)),
+                drainStep("memberships", new Target(GroupMembership.class, Criteria.where("userId").is(userId),
+                        List.of("groupId"), null, this::recountGroups)),
+                drainStep("content",
+                        new Target(UserProfile.class, Criteria.where("userId").is(userId),
+                                List.of("image"), uploadsIn("image"), null),
+                        new Target(MealPlan.class, Criteria.where("userId").is(userId), List.of(), null,
+                                batch -> valuesOf(batch, "_id").forEach(id ->
+                                        recipeMatchService.remove(RecipeMatchService.SOURCE_MEAL_PLAN, id))),
+                        new Target(SkillShare.class, Criteria.where("userId").is(userId),
+                                List.of("mediaUrls"), uploadsIn("mediaUrls"),
+                                batch -> valuesOf(batch, "_id").forEach(id ->
+                                        recipeMatchService.remove(RecipeMatchService.SOURCE_SKILL_SHARE, id))),
+                        new Target(StoryStatusUpdate.class, Criteria.where("userId").is(userId),
+                                List.of("image"), uploadsIn("image"), null)));
+    }
+
+    // Everything that hangs off a post, used both for a deleted post and for each batch of a deleted user's posts
+    private List<Target> postTargets(List<String> postIds) {
+        return List.of(
+                new Target(Like.class, Criteria.where("postId").in(postIds)),
+                new Target(Comment.class, Criteria.where("postId").in(postIds), List.of(),
+                        (job, batch) -> removeReplyNotifications(valuesOf(batch, "_id")), null),
+                new Target(Media.class, Criteria.where("postId").in(postIds), List.of("mediaUrl"), uploadsIn("mediaUrl"), null),
+                new Target(Bookmark.class, Criteria.where("resourceType").is("post").and("resourceId").in(postIds)),
+                new Target(Notification.class, Criteria.where("sourceType").is("post").and("sourceId").in(postIds)),
+                new Target(TimelineEntry.class, Criteria.where("postId").in(postIds)));
+    }
+
+    private Step drainStep(String name, Target... targets) {
+        return new Step(name, job -> {
+            for (Target target : targets) {
+                drain(job, target);
+            }
+        });
+    }
+
+    // Removes the target's documents a batch at a time until none are left
+    private void drain(DeletionJob job, Target target) {
+        String collection = collection(target.type());
+        Query query = Query.query(target.criteria()).limit(batchSize);
+        query.fields().include("_id");
+        target.fields().forEach(field -> query.fields().include(field));
+        while (true) {
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (target.before() != null) {
+                target.before().accept(job, batch);
+            }
+            List<Object> ids = batch.stream().map(doc -> doc.get("_id")).toList();
+            long removed = mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), collection).getDeletedCount();
+            if (target.after() != null) {
+                target.after().accept(batch);
+            }
+            progress(job, collection, removed);
+            pause();
+        }
+    }
+
+    // The user's posts a batch at a time, each batch's dependents before the posts themselves
+    private void removePosts(DeletionJob job, String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId)).limit(batchSize);
+        query.fields().include("id", "mediaLinks", "mediaLink");
+        while (true) {
+            List<Post> posts = mongoTemplate.find(query, Post.class);
+            if (posts.isEmpty()) {
+                return;
+            }
+            List<String> uploads = new ArrayList<>();
+            for (Post post : posts) {
+                collectUploads(post.getMediaLinks(), uploads);
+                collectUploads(post.getMediaLink(), uploads);
+            }
+            addFiles(job, uploads);
+
+            List<String> ids = posts.stream().map(Post::getId).toList();
+            for (Target target : postTargets(ids)) {
+                drain(job, target);
+            }
+            long removed = mongoTemplate.remove(Query.query(Criteria.where("id").in(ids)), Post.class).getDeletedCount();
+            ids.forEach(this::forgetPost);
+            postBrowseService.invalidateFacets();
+            progress(job, collection(Post.class), removed);
+            pause();
+        }
+    }
+
+    // The user's comments on other people's posts. Each batch is removed in one transaction with the replyCount
+    // decrements of the comments it answered and its CommentRemoved events, so a retried batch loses neither
+    private void removeComments(DeletionJob job, String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId)).limit(batchSize);
+        query.fields().include("id");
+        while (true) {
+            List<String> ids = mongoTemplate.find(query, Comment.class).stream().map(Comment::getId).toList();
+            if (ids.isEmpty()) {
+                return;
+            }
+            removeReplyNotifications(ids);
+            long removed = outboxService.inTransaction(() -> {
+                List<Comment> comments = mongoTemplate.findAllAndRemove(
+                        Query.query(Criteria.where("id").in(ids)), Comment.class);
+                comments.stream()
+                        .filter(comment -> comment.getParentId() != null)
+                        .collect(Collectors.groupingBy(Comment::getParentId, Collectors.counting()))
+                        .forEach((parentId, replies) -> mongoTemplate.updateFirst(
+                                Query.query(Criteria.where("id").is(parentId)),
+                                new Update().inc("replyCount", -replies), Comment.class));
+                comments.forEach(comment -> outboxService.record(
+                        CommentService.event(OutboxEvent.COMMENT_REMOVED, comment)));
+                return (long) comments.size();
+            });
+            progress(job, collection(Comment.class), removed);
+            pause();
+        }
+    }
+
+    // Groups the user created become deletion jobs of their own
+    private void removeGroups(DeletionJob job, String userId) {
+        Query query = Query.query(Criteria.where("creatorId").is(userId)).limit(batchSize);
+        while (true) {
+            List<Group> groups = mongoTemplate.find(query, Group.class);
+            if (groups.isEmpty()) {
+                return;
+            }
+            long removed = groups.stream().filter(this::deleteGroup).count();
+            progress(job, collection(Group.class), removed);
+            pause();
+        }
+    }
+
+    private void removeConnections(DeletionJob job, String userId) {
+        // One multi-update through the friendIds index; the arrays are not documents to batch
+        mongoTemplate.updateMulti(Query.query(Criteria.where("friendIds").is(userId)),
+                new Update().pull("friendIds", userId), UserConnection.class);
+        renew(job, new Update());
+        drain(job, new Target(ConnectionEdge.class, new Criteria().orOperator(
+                Criteria.where("userId").is(userId), Criteria.where("friendId").is(userId)),
+                List.of("userId", "friendId"), null,
+                batch -> batch.forEach(edge -> socialGraphService.friendRemoved(
+                        edge.getString("userId"), edge.getString("friendId")))));
+        drain(job, new Target(UserConnection.class, Criteria.where("userId").is(userId)));
+    }
+
+    private void removeReplyNotifications(Collection<String> commentIds) {
+        mongoTemplate.remove(Query.query(Criteria.where("sourceType").is("comment")
+                .and("sourceId").in(commentIds)), Notification.class);
+    }
+
+    private void recountGroups(List<Document> memberships) {
+        valuesOf(memberships, "groupId").forEach(groupMembershipService::recount);
+        groupDiscoveryService.invalidate();
+    }
+
+    private void forgetPost(String postId) {
+        recipeSearchIndex.remove(postId);
+        recipeMatchService.remove(RecipeMatchService.SOURCE_POST, postId);
+        trendingService.postRemoved(postId);
+    }
+
+    private void removeFiles(DeletionJob job) {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        for (String url : job.getFiles()) {
+            Path file = root.resolve(url.substring(url.lastIndexOf(UPLOAD_PATH) + UPLOAD_PATH.length())).normalize();
+            if (!root.equals(file.getParent())) {
+                continue;
+            }
+            try {
+                if (Files.deleteIfExists(file)) {
+                    filesRemoved.increment();
+                }
+            } catch (IOException e) {
+                // A file left behind is only disk space; it does not hold the job back
+                log.warn("Could not delete upload {} of deletion job {}", file, job.getId(), e);
+            }
+        }
+    }
+
+    private BiConsumer<DeletionJob, List<Document>> uploadsIn(String field) {
+        return (job, batch) -> {
+            List<String> uploads = new ArrayList<>();
+            batch.forEach(doc -> collectUploads(doc.get(field), uploads));
+            addFiles(job, uploads);
+        };
+    }
+
+    // Only files served from our upload directory; external links are left alone
+    private static void collectUploads(Object value, Collection<String> into) {
+        if (value instanceof String url) {
+            if (url.contains(UPLOAD_PATH)) {
+                into.add(url);
+            }
+        } else if (value instanceof Collection<?> values) {
+            values.forEach(each -> collectUploads(each, into));
+        }
+    }
+
+    private void addFiles(DeletionJob job, List<String> uploads) {
+        List<String> fresh = uploads.stream().distinct().filter(url -> !job.getFiles().contains(url)).toList();
+        if (fresh.isEmpty()) {
+            return;
+        }
+        renew(job, new Update().addToSet("files").each(fresh.toArray()));
+        job.getFiles().addAll(fresh);
+    }
+
+    private static Set<String> valuesOf(List<Document> batch, String field) {
+        Set<String> values = new LinkedHashSet<>();
+        for (Document doc : batch) {
+            Object value = doc.get(field);
+            if (value != null) {
+                values.add(value.toString());
+            }
+        }
+        return values;
+    }
+
+    private void progress(DeletionJob job, String collection, long removed) {
+        renew(job, new Update().inc("removed." + collection, removed));
+        job.getRemoved().merge(collection, removed, Long::sum);
+        meterRegistry.counter("deletion.documents.removed", "collection", collection).increment(removed);
+    }
+
+    // Every write to a running job also extends its lease, and fails if the lease was lost
+    private void renew(DeletionJob job, Update update) {
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(job.getId()).and("owner").is(nodeId)),
+                update.set("leaseUntil", lease()), DeletionJob.class);
+        if (result.getMatchedCount() == 0) {
+            throw new LeaseLost();
+        }
+    }
+
+    private void pause() {
+        if (batchPauseMs > 0) {
+            try {
+                Thread.sleep(batchPauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Stopped();
+            }
+        } else if (Thread.currentThread().isInterrupted()) {
+            throw new Stopped();
+        }
+    }
+
+    private void finish(DeletionJob job) {
+        Date now = new Date();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(job.getId()).and("owner").is(nodeId)),
+                new Update().set("status", DeletionJob.DONE).set("finishedAt", now).unset("step")
+                        .unset("owner").unset("leaseUntil"),
+                DeletionJob.class);
+        completed.increment();
+        duration.record(now.getTime() - job.getCreatedAt().getTime(), TimeUnit.MILLISECONDS);
+        log.info("Deleted {} {} and its dependents {}", job.getRootType(), job.getRootId(), job.getRemoved());
+    }
+
+    // Lets another node resume the job right away instead of waiting for the lease
+    private void release(DeletionJob job) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(job.getId()).and("owner").is(nodeId)),
+                new Update().unset("owner").unset("leaseUntil"), DeletionJob.class);
+    }
+
+    private void retry(DeletionJob job, RuntimeException error) {
+        int attempts = job.getAttempts() + 1;
+        Update update = new Update().set("attempts", attempts).set("lastError", error.getMessage()).unset("owner");
+        Query query = Query.query(Criteria.where("id").is(job.getId()).and("owner").is(nodeId));
+        if (attempts >= maxAttempts) {
+            log.error("Giving up on deletion job {} ({} {}) after {} attempts",
+                    job.getId(), job.getRootType(), job.getRootId(), attempts, error);
+            mongoTemplate.updateFirst(query, update.set("status", DeletionJob.FAILED).unset("leaseUntil"),
+                    DeletionJob.class);
+            failed.increment();
+            return;
+        }
+
+        long backoff = Math.min(retryMaxMs, retryBaseMs << Math.min(attempts - 1, 20));
+        log.warn("Deletion job {} ({} {}) failed at step {}; retrying in {} ms",
+                job.getId(), job.getRootType(), job.getRootId(), job.getStep(), backoff, error);
+        mongoTemplate.updateFirst(query, update.set("leaseUntil", new Date(System.currentTimeMillis() + backoff)),
+                DeletionJob.class);
+        retried.increment();
+    }
+
+    private Date lease() {
+        return new Date(System.currentTimeMillis() + leaseMs);
+    }
+
+    private String collection(Class<?> type) {
+        return mongoTemplate.getCollectionName(type);
+    }
+}
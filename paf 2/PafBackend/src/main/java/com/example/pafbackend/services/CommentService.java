@@ -0,0 +1,321 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.CommentPage;
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.OutboxEvent;
+import com.example.pafbackend.repositories.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Comments of a post in creation order, read a page at a time in either
+ * direction from a keyset cursor, plus the latest few comments of many posts
+ * at once for feed cards.
+ *
+ * Replies form threads through a materialized path: each comment stores the
+ * ids from its top-level comment down to itself, so a sub-thread is a single
+ * prefix range on the path index, returned in depth-first order. Pages list
+ * one level (top-level comments, or the direct replies to one comment) and
+ * carry each comment's reply count, so deep threads are only read when
+ * expanded.
+ *
+ * Creating and deleting comments records CommentAdded and CommentRemoved
+ * outbox events in the same transaction; counters, trending and
+ * notifications follow from those.
+ *
+ * Comments stored before timestamps were set server-side get one derived from
+ * their ObjectId, and those from before threading get a top-level path, once
+ * the application is ready.
+ */
+@Slf4j
+@Service
+public class CommentService {
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxService outboxService;
+    private final ExecutorService previewExecutor;
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("comment-backfill-"));
+
+    @Value("${comments.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    @Value("${comments.thread.max-depth:32}")
+    private int maxDepth;
+
+    public CommentService(MongoTemplate mongoTemplate, OutboxService outboxService,
+                          @Value("${comments.preview.threads:8}") int previewThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxService = outboxService;
+        this.previewExecutor = Executors.newFixedThreadPool(previewThreads, new CustomizableThreadFactory("comment-preview-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfiller.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                log.error("Backfilling comment timestamps and paths failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfiller.shutdownNow();
+        previewExecutor.shutdown();
+    }
+
+    /** Saves a new top-level comment; the caller has set postId, userId and text. */
+    public Comment create(Comment comment) {
+        // The id is part of the path, so it is assigned before the insert
+        comment.setId(new ObjectId().toHexString());
+        comment.setParentId(null);
+        comment.setPath(comment.getId() + "/");
+        comment.setDepth(0);
+        comment.setReplyCount(0);
+        comment.setTimestamp(new Date());
+        return outboxService.inTransaction(() -> {
+            Comment saved = mongoTemplate.insert(comment);
+            outboxService.record(event(OutboxEvent.COMMENT_ADDED, saved));
+            return saved;
+        });
+    }
+
+    /**
+     * Saves a reply to {@code parent}; the caller has set userId and text.
+     *
+     * @throws IllegalArgumentException if the thread is already at comments.thread.max-depth
+     */
+    public Comment reply(Comment parent, Comment reply) {
+        if (parent.getDepth() >= maxDepth) {
+            throw new IllegalArgumentException("Thread is too deep to reply to");
+        }
+        reply.setId(new ObjectId().toHexString());
+        reply.setPostId(parent.getPostId());
+        reply.setParentId(parent.getId());
+        reply.setPath(pathOf(parent) + reply.getId() + "/");
+        reply.setDepth(parent.getDepth() + 1);
+        reply.setReplyCount(0);
+        reply.setTimestamp(new Date());
+        return outboxService.inTransaction(() -> {
+            Comment saved = mongoTemplate.insert(reply);
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(parent.getId())),
+                    new Update().inc("replyCount", 1), Comment.class);
+            outboxService.record(event(OutboxEvent.COMMENT_ADDED, saved));
+            return saved;
+        });
+    }
+
+    // Only the text is written, so a concurrent reply's replyCount increment is not overwritten
+    public Comment updateText(String id, String commentText) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)),
+                new Update().set("commentText", commentText),
+                FindAndModifyOptions.options().returnNew(true), Comment.class);
+    }
+
+    public Comment find(String id) {
+        return mongoTemplate.findById(id, Comment.class);
+    }
+
+    /**
+     * The comment and its replies to at most {@code depth} levels below it,
+     * in depth-first order with siblings oldest first, capped at
+     * {@code limit} comments.
+     */
+    public List<Comment> thread(Comment root, int depth, int limit) {
+        // ObjectId hex has a fixed width and sorts by creation time, so sorting by path is a pre-order walk
+        Query query = Query.query(Criteria.where("path").regex("^" + pathOf(root))
+                        .and("depth").lte(root.getDepth() + depth))
+                .with(Sort.by(Sort.Direction.ASC, "path"))
+                .limit(limit);
+        List<Comment> thread = new ArrayList<>(mongoTemplate.find(query, Comment.class));
+        if (root.getPath() == null) {
+            // Not backfilled yet, so the prefix range misses the root itself
+            thread.add(0, root);
+        }
+        return thread;
+    }
+
+    /**
+     * Removes the comment with all its replies and returns what was removed,
+     * or an empty list if the comment does not exist.
+     */
+    public List<Comment> deleteThread(String id) {
+        Comment root = find(id);
+        if (root == null) {
+            return List.of();
+        }
+        // The id clause covers a root not backfilled yet, whose own path is still missing
+        Query subtree = Query.query(new Criteria().orOperator(
+                Criteria.where("path").regex("^" + pathOf(root)), Criteria.where("id").is(id)));
+        return outboxService.inTransaction(() -> {
+            List<Comment> removed = mongoTemplate.findAllAndRemove(subtree, Comment.class);
+            if (!removed.isEmpty() && root.getParentId() != null) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(root.getParentId())),
+                        new Update().inc("replyCount", -1), Comment.class);
+            }
+            removed.forEach(comment -> outboxService.record(event(OutboxEvent.COMMENT_REMOVED, comment)));
+            return removed;
+        });
+    }
+
+    /**
+     * One page of a post's comments at one level, oldest first: top-level
+     * comments when {@code parentId} is null, else the direct replies to that
+     * comment. With {@code after} it is the page of newer comments following
+     * that cursor; otherwise it is the page of older comments preceding
+     * {@code before}, or the most recent comments when no cursor is given.
+     *
+     * @throws IllegalArgumentException if a cursor is malformed
+     */
+    public CommentPage page(String postId, String parentId, String before, String after, int limit) {
+        boolean forward = after != null && !after.isBlank();
+        boolean fromStart = !forward && (before == null || before.isBlank());
+        Criteria position = null;
+        if (forward) {
+            position = KeysetCursor.decode(after).after("timestamp", "id");
+        } else if (!fromStart) {
+            position = KeysetCursor.decode(before).before("timestamp", "id");
+        }
+
+        Sort.Direction direction = forward ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Criteria level = Criteria.where("postId").is(postId).and("parentId").is(parentId);
+        Query query = new Query(KeysetCursor.and(level, position))
+                .with(Sort.by(direction, "timestamp", "id"))
+                .limit(limit + 1);
+        List<Comment> rows = mongoTemplate.find(query, Comment.class);
+        boolean more = rows.size() > limit;
+        List<Comment> items = new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+        if (!forward) {
+            Collections.reverse(items);
+        }
+
+        CommentPage page = new CommentPage();
+        page.setItems(items);
+        // Coming from a cursor means there is at least the comment it points at on the other side
+        page.setHasOlder(forward || more);
+        page.setHasNewer(forward ? more : !fromStart);
+        if (!items.isEmpty()) {
+            page.setOlderCursor(cursorOf(items.get(0)));
+            page.setNewerCursor(cursorOf(items.get(items.size() - 1)));
+        } else if (!fromStart) {
+            // Nothing past the cursor yet; hand it back so clients can poll with it
+            page.setOlderCursor(forward ? after : before);
+            page.setNewerCursor(forward ? after : before);
+        }
+        return page;
+    }
+
+    /**
+     * The latest {@code perPost} top-level comments of each post, oldest
+     * first, keyed in the order of {@code postIds}. Each post is a separate
+     * index-bounded query, run in parallel, so a post with many comments costs
+     * no more than one with a few.
+     */
+    public Map<String, List<Comment>> latestByPost(Collection<String> postIds, int perPost) {
+        Map<String, CompletableFuture<List<Comment>>> pending = new LinkedHashMap<>();
+        for (String postId : postIds) {
+            pending.computeIfAbsent(postId, id -> CompletableFuture.supplyAsync(() -> latest(id, perPost), previewExecutor));
+        }
+        Map<String, List<Comment>> latest = new LinkedHashMap<>();
+        pending.forEach((postId, comments) -> latest.put(postId, comments.join()));
+        return latest;
+    }
+
+    private List<Comment> latest(String postId, int count) {
+        // Replies stay out of the preview; postId plus a null parentId walks post_parent_time_idx backwards
+        Query query = Query.query(Criteria.where("postId").is(postId).and("parentId").is(null))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "id"))
+                .limit(count);
+        List<Comment> comments = new ArrayList<>(mongoTemplate.find(query, Comment.class));
+        Collections.reverse(comments);
+        return comments;
+    }
+
+    // Comments written before threading are top-level and may not be backfilled yet
+    private static String pathOf(Comment comment) {
+        return comment.getPath() != null ? comment.getPath() : comment.getId() + "/";
+    }
+
+    static OutboxEvent event(String type, Comment comment) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("commentId", comment.getId());
+        payload.put("postId", comment.getPostId());
+        payload.put("userId", comment.getUserId());
+        payload.put("parentId", comment.getParentId());
+        payload.put("timestamp", comment.getTimestamp());
+        return OutboxEvent.of(type, "post", comment.getPostId(), payload);
+    }
+
+    private static String cursorOf(Comment comment) {
+        return KeysetCursor.of(comment.getTimestamp(), comment.getId()).encode();
+    }
+
+    // An ObjectId carries its creation second, which is the best timestamp left for older comments;
+    // comments without a path predate replies and are top-level
+    void backfill() {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("timestamp").exists(false), Criteria.where("path").exists(false)));
+        query.fields().include("id", "timestamp", "path");
+
+        int[] updated = {0};
+        List<Comment> batch = new ArrayList<>(backfillBatchSize);
+        try (Stream<Comment> comments = mongoTemplate.stream(query, Comment.class)) {
+            comments.filter(comment -> ObjectId.isValid(comment.getId())).forEach(comment -> {
+                batch.add(comment);
+                if (batch.size() >= backfillBatchSize) {
+                    updated[0] += backfillBatch(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            updated[0] += backfillBatch(batch);
+        }
+        if (updated[0] > 0) {
+            log.info("Backfilled timestamps and paths on {} comments", updated[0]);
+        }
+    }
+
+    private int backfillBatch(List<Comment> comments) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Comment.class);
+        for (Comment comment : comments) {
+            Update update = new Update();
+            if (comment.getTimestamp() == null) {
+                update.set("timestamp", new ObjectId(comment.getId()).getDate());
+            }
+            if (comment.getPath() == null) {
+                update.set("path", comment.getId() + "/").set("depth", 0).set("replyCount", 0L);
+            }
+            bulk.updateOne(Query.query(Criteria.where("id").is(comment.getId())), update);
+        }
+        return bulk.execute().getModifiedCount();
+    }
+}
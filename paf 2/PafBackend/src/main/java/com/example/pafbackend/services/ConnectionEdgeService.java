@@ -0,0 +1,262 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.ConnectionProfile;
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.models.ConnectionEdge;
+import com.example.pafbackend.models.UserConnection;
+import com.example.pafbackend.models.UserProfile;
+import com.example.pafbackend.repositories.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Friend lists as one {@link ConnectionEdge} per (userId, friendId), so
+ * "who lists me" is an index range instead of a scan of every friendIds
+ * array, and both directions page with a keyset cursor.
+ *
+ * {@link UserConnectionService} writes the edges next to the friendIds
+ * arrays. Arrays from before the edges existed are copied over in the
+ * background once the application is ready; each connections document is
+ * marked when done, and until then its edges may be missing from pages.
+ */
+@Slf4j
+@Service
+public class ConnectionEdgeService {
+
+    private static final String MIGRATED_FIELD = "edgesMigrated";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ExecutorService migrator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("connection-edges-"));
+
+    @Value("${connections.edges.migration-batch-size:1000}")
+    private int migrationBatchSize;
+
+    public ConnectionEdgeService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        migrator.execute(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                log.error("Migrating friend lists to connection edges failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdownNow();
+    }
+
+    /** Adds the edges user -> friend and friend -> user for each friend. */
+    public void addBoth(String userId, Collection<String> friendIds) {
+        if (friendIds.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConnectionEdge.class);
+        for (String friendId : friendIds) {
+            upsert(bulk, userId, friendId, now);
+            upsert(bulk, friendId, userId, now);
+        }
+        execute(bulk);
+    }
+
+    public void removeBoth(String userId, String friendId) {
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                Criteria.where("userId").is(userId).and("friendId").is(friendId),
+                Criteria.where("userId").is(friendId).and("friendId").is(userId))), ConnectionEdge.class);
+    }
+
+    /** Users in the user's friend list, most recently added first. */
+    public CursorPage<ConnectionProfile> following(String userId, String cursor, int limit) {
+        return page("userId", userId, ConnectionEdge::getFriendId, cursor, limit);
+    }
+
+    /** Users who have the user in their friend list, most recently added first. */
+    public CursorPage<ConnectionProfile> followers(String userId, String cursor, int limit) {
+        return page("friendId", userId, ConnectionEdge::getUserId, cursor, limit);
+    }
+
+    /** Every user who lists {@code userId}, streamed from the followers index. */
+    public Stream<String> streamFollowerIds(String userId) {
+        Query query = Query.query(Criteria.where("friendId").is(userId));
+        query.fields().include("userId");
+        return mongoTemplate.stream(query, ConnectionEdge.class).map(ConnectionEdge::getUserId);
+    }
+
+    public long countFollowers(String userId) {
+        return mongoTemplate.count(Query.query(Criteria.where("friendId").is(userId)), ConnectionEdge.class);
+    }
+
+    public List<String> followingIds(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        query.fields().include("friendId");
+        return mongoTemplate.find(query, ConnectionEdge.class).stream().map(ConnectionEdge::getFriendId).toList();
+    }
+
+    // otherEnd picks the user on the far side of each edge
+    private CursorPage<ConnectionProfile> page(String ownField, String userId, Function<ConnectionEdge, String> otherEnd,
+                                               String cursor, int limit) {
+        KeysetCursor position = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        Query query = new Query(KeysetCursor.and(
+                Criteria.where(ownField).is(userId),
+                position == null ? null : position.before("createdAt", "id")))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                .limit(limit + 1);
+        CursorPage<ConnectionEdge> edges = CursorPage.of(mongoTemplate.find(query, ConnectionEdge.class), limit,
+                edge -> KeysetCursor.of(edge.getCreatedAt(), edge.getId()).encode());
+
+        List<String> otherIds = edges.getItems().stream().map(otherEnd).toList();
+        Map<String, UserProfile> profiles = profilesOf(otherIds);
+
+        List<ConnectionProfile> items = new ArrayList<>(otherIds.size());
+        for (int i = 0; i < otherIds.size(); i++) {
+            ConnectionProfile item = new ConnectionProfile();
+            item.setUserId(otherIds.get(i));
+            item.setConnectedAt(edges.getItems().get(i).getCreatedAt());
+            UserProfile profile = profiles.get(otherIds.get(i));
+            if (profile != null) {
+                item.setDisplayName(profile.getDisplayName());
+                item.setImage(profile.getImage());
+            }
+            items.add(item);
+        }
+        return new CursorPage<>(items, edges.getNextCursor());
+    }
+
+    // One $in query for the whole page, fetching only what a list row shows
+    private Map<String, UserProfile> profilesOf(List<String> userIds) {
+        Map<String, UserProfile> profiles = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return profiles;
+        }
+        Query query = Query.query(Criteria.where("userId").in(userIds));
+        query.fields().include("userId", "displayName", "image");
+        mongoTemplate.find(query, UserProfile.class).forEach(profile -> profiles.putIfAbsent(profile.getUserId(), profile));
+        return profiles;
+    }
+
+    void migrate() {
+        Query query = Query.query(Criteria.where(MIGRATED_FIELD).ne(true));
+        query.fields().include("id", "userId", "friendIds");
+
+        int[] migrated = {0};
+        List<UserConnection> batch = new ArrayList<>();
+        try (Stream<UserConnection> connections = mongoTemplate.stream(query, UserConnection.class)) {
+            connections.forEach(connection -> {
+                batch.add(connection);
+                if (batch.size() >= migrationBatchSize) {
+                    migrated[0] += migrateBatch(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            migrated[0] += migrateBatch(batch);
+        }
+        if (migrated[0] > 0) {
+            log.info("Migrated friend lists of {} users to connection edges", migrated[0]);
+        }
+    }
+
+    // Upserts make a rerun after a crash harmless; the marker is set only once a document's edges are all written
+    private int migrateBatch(List<UserConnection> connections) {
+        BulkOperations edges = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConnectionEdge.class);
+        Map<String, Date> since = new HashMap<>();
+        for (UserConnection connection : connections) {
+            if (connection.getUserId() == null || connection.getFriendIds() == null) {
+                continue;
+            }
+            // The document's creation time is the best guess at when these friendships started
+            Date createdAt = ObjectId.isValid(connection.getId()) ? new ObjectId(connection.getId()).getDate() : new Date();
+            for (String friendId : connection.getFriendIds()) {
+                if (friendId != null && !friendId.equals(connection.getUserId())) {
+                    upsert(edges, connection.getUserId(), friendId, createdAt);
+                    since.put(connection.getId(), createdAt);
+                }
+            }
+        }
+        if (!since.isEmpty()) {
+            execute(edges);
+            removeUnfriended(connections, since);
+        }
+
+        List<String> ids = connections.stream().map(UserConnection::getId).toList();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(ids)), Update.update(MIGRATED_FIELD, true),
+                UserConnection.class);
+        return connections.size();
+    }
+
+    // An unfriend racing the batch may have removed its edges before the upserts above brought them back from
+    // the streamed friendIds. Arrays change before their edges, so reading them again now shows every such pull.
+    // Only edges still carrying the migration's createdAt go; one a concurrent re-add wrote has its own.
+    private void removeUnfriended(List<UserConnection> streamed, Map<String, Date> since) {
+        Query query = Query.query(Criteria.where("id").in(since.keySet()));
+        query.fields().include("id", "friendIds");
+        Map<String, Set<String>> current = new HashMap<>();
+        mongoTemplate.find(query, UserConnection.class).forEach(connection -> current.put(connection.getId(),
+                connection.getFriendIds() == null ? Set.of() : new HashSet<>(connection.getFriendIds())));
+
+        for (UserConnection connection : streamed) {
+            Date createdAt = since.get(connection.getId());
+            if (createdAt == null) {
+                continue;
+            }
+            Set<String> friends = current.getOrDefault(connection.getId(), Set.of());
+            List<String> gone = connection.getFriendIds().stream()
+                    .filter(friendId -> friendId != null && !friends.contains(friendId))
+                    .toList();
+            if (!gone.isEmpty()) {
+                mongoTemplate.remove(Query.query(Criteria.where("userId").is(connection.getUserId())
+                        .and("friendId").in(gone).and("createdAt").is(createdAt)), ConnectionEdge.class);
+            }
+        }
+    }
+
+    private static void upsert(BulkOperations bulk, String userId, String friendId, Date createdAt) {
+        bulk.upsert(Query.query(Criteria.where("userId").is(userId).and("friendId").is(friendId)),
+                new Update().setOnInsert("createdAt", createdAt));
+    }
+
+    // Racing upserts of the same new edge collide on the unique index; the edge exists either way
+    private static void execute(BulkOperations bulk) {
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+}
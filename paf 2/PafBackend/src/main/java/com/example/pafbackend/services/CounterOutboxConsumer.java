@@ -0,0 +1,39 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+// Post like and comment counters; the periodic reconcile corrects the rare double delivery
+@Component
+public class CounterOutboxConsumer implements OutboxConsumer {
+
+    // Set on events whose post counters were already recounted by the writer, as LikeWriteBuffer does
+    static final String RECOUNTED = "recounted";
+
+    private final PostCounterService postCounterService;
+
+    public CounterOutboxConsumer(PostCounterService postCounterService) {
+        this.postCounterService = postCounterService;
+    }
+
+    @Override
+    public String name() {
+        return "counters";
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        if (Boolean.TRUE.equals(event.getPayload().get(RECOUNTED))) {
+            return;
+        }
+        String postId = (String) event.getPayload().get("postId");
+        switch (event.getType()) {
+            case OutboxEvent.LIKE_ADDED -> postCounterService.adjustLikeCount(postId, 1);
+            case OutboxEvent.LIKE_REMOVED -> postCounterService.adjustLikeCount(postId, -1);
+            case OutboxEvent.COMMENT_ADDED -> postCounterService.adjustCommentCount(postId, 1);
+            case OutboxEvent.COMMENT_REMOVED -> postCounterService.adjustCommentCount(postId, -1);
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Group;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Public group listing and discovery search, served from memory.
+ *
+ * All public groups are held in a snapshot together with an
+ * {@link InvertedIndex} over their name, tags and description. Reads are
+ * stale-while-revalidate: they always get the current snapshot, and one that
+ * is older than {@code groups.discovery.refresh-interval-ms} is rebuilt from
+ * Mongo in the background. Group create, update and delete ask for a rebuild
+ * straight away; member counts, which only affect ranking, catch up at the
+ * next refresh. Only the very first read before the startup build finishes
+ * waits for Mongo.
+ *
+ * Search ranks by BM25 text relevance scaled by popularity,
+ * {@code 1 + popularity-weight * ln(1 + memberCount)}.
+ */
+@Slf4j
+@Service
+public class GroupDiscoveryService {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    // Text hits fetched per result wanted, so popularity can still reorder them
+    private static final int CANDIDATES_PER_RESULT = 5;
+
+    private static final Comparator<Group> MOST_MEMBERS = Comparator
+            .comparingLong(Group::getMemberCount).reversed()
+            .thenComparing(Group::getId);
+
+    private final MongoTemplate mongoTemplate;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("group-discovery-"));
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final Object loadLock = new Object();
+    private volatile Snapshot snapshot;
+
+    @Value("${groups.discovery.refresh-interval-ms:60000}")
+    private long refreshIntervalMs;
+
+    @Value("${groups.discovery.popularity-weight:0.25}")
+    private double popularityWeight;
+
+    // Public groups in creation order, by id, and indexed; replaced whole on every refresh
+    private record Snapshot(List<Group> groups, Map<String, Group> byId, InvertedIndex index, long loadedAt) {
+    }
+
+    public GroupDiscoveryService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        queueRefresh();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /** Every public group, oldest first, as of the last refresh. */
+    public List<Group> publicGroups() {
+        return current().groups();
+    }
+
+    /**
+     * Public groups matching the query text, optionally only those tagged
+     * {@code tag}, best first. Without text, the most popular groups (with
+     * the tag, if given).
+     */
+    public List<Group> discover(String text, String tag, int limit) {
+        Snapshot current = current();
+        String wantedTag = tag == null || tag.isBlank() ? null : tag.trim().toLowerCase(Locale.ROOT);
+        List<String> terms = TextAnalyzer.analyze(text);
+
+        if (terms.isEmpty()) {
+            return current.groups().stream()
+                    .filter(group -> hasTag(group, wantedTag))
+                    .sorted(MOST_MEMBERS)
+                    .limit(limit)
+                    .toList();
+        }
+
+        // A tag filter can drop most text hits, so it searches deeper
+        int candidates = wantedTag == null ? limit * CANDIDATES_PER_RESULT : current.groups().size();
+        List<ScoredGroup> scored = new ArrayList<>();
+        for (InvertedIndex.Hit hit : current.index().search(terms, candidates)) {
+            Group group = current.byId().get(hit.getKey());
+            if (group != null && hasTag(group, wantedTag)) {
+                double popularity = 1 + popularityWeight * Math.log1p(Math.max(0, group.getMemberCount()));
+                scored.add(new ScoredGroup(group, hit.getScore() * popularity));
+            }
+        }
+        scored.sort(Comparator.comparingDouble(ScoredGroup::score).reversed());
+        return scored.stream().limit(limit).map(ScoredGroup::group).toList();
+    }
+
+    private record ScoredGroup(Group group, double score) {
+    }
+
+    /** Asks for a rebuild after a write; reads keep the current snapshot until it is done. */
+    public void invalidate() {
+        queueRefresh();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (loadLock) {
+                if (snapshot == null) {
+                    snapshot = loadSnapshot();
+                }
+                return snapshot;
+            }
+        }
+        if (System.currentTimeMillis() - current.loadedAt() > refreshIntervalMs) {
+            queueRefresh();
+        }
+        return current;
+    }
+
+    // Refreshes asked for while one is queued fold into it
+    private void queueRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            try {
+                refresher.execute(this::refresh);
+            } catch (RejectedExecutionException e) {
+                refreshQueued.set(false);
+            }
+        }
+    }
+
+    private void refresh() {
+        refreshQueued.set(false);
+        try {
+            Snapshot fresh = loadSnapshot();
+            synchronized (loadLock) {
+                snapshot = fresh;
+            }
+        } catch (Exception e) {
+            // Keep serving the old snapshot; the next stale read tries again
+            log.error("Refreshing the public group listing failed", e);
+        }
+    }
+
+    private Snapshot loadSnapshot() {
+        Query query = Query.query(Criteria.where("isPublic").is(true)).with(Sort.by(Sort.Direction.ASC, "id"));
+        List<Group> groups = mongoTemplate.find(query, Group.class);
+        Map<String, Group> byId = new HashMap<>(groups.size() * 2);
+        InvertedIndex index = new InvertedIndex();
+        for (Group group : groups) {
+            byId.put(group.getId(), group);
+            index.put(group.getId(), termFrequencies(group));
+        }
+        return new Snapshot(List.copyOf(groups), byId, index, System.currentTimeMillis());
+    }
+
+    private static boolean hasTag(Group group, String tag) {
+        if (tag == null) {
+            return true;
+        }
+        if (group.getTags() == null) {
+            return false;
+        }
+        for (String candidate : group.getTags()) {
+            if (candidate != null && candidate.trim().toLowerCase(Locale.ROOT).equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, Integer> termFrequencies(Group group) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addTerms(frequencies, group.getName(), NAME_WEIGHT);
+        addTerms(frequencies, group.getDescription(), DESCRIPTION_WEIGHT);
+        if (group.getTags() != null) {
+            for (String tag : group.getTags()) {
+                addTerms(frequencies, tag, TAG_WEIGHT);
+            }
+        }
+        return frequencies;
+    }
+
+    // Field weights are folded into the term frequency, as in the recipe index
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : TextAnalyzer.analyze(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.models.Group;
+import com.example.pafbackend.models.GroupMembership;
+import com.example.pafbackend.repositories.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Group members as one {@link GroupMembership} document each, so joining or
+ * leaving touches one small document instead of rewriting the group, and
+ * member lists page with a keyset cursor.
+ *
+ * {@code Group.memberCount} moves in the same transaction as the membership
+ * it counts. The creator is always an admin and cannot leave.
+ *
+ * Groups from before this collection existed carry memberIds and adminIds
+ * arrays; they are copied into memberships and removed from the group in
+ * the background once the application is ready.
+ */
+@Slf4j
+@Service
+public class GroupMembershipService {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    public enum Outcome { CHANGED, UNCHANGED, NOT_FOUND, FORBIDDEN }
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxService outboxService;
+    private final ExecutorService migrator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("group-members-"));
+
+    @Value("${groups.members.batch-size:1000}")
+    private int batchSize;
+
+    public GroupMembershipService(MongoTemplate mongoTemplate, OutboxService outboxService) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxService = outboxService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        migrator.execute(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                log.error("Migrating group member arrays to memberships failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdownNow();
+    }
+
+    /** Saves a new group with its creator as the only member, an admin. */
+    public Group create(Group group) {
+        group.setId(null);
+        group.setMemberCount(1);
+        return outboxService.inTransaction(() -> {
+            Group saved = mongoTemplate.insert(group);
+            mongoTemplate.insert(membership(saved.getId(), saved.getCreatorId(), GroupMembership.ADMIN, new Date()));
+            return saved;
+        });
+    }
+
+    /** Adds the user to the group; private groups are joined only through their admins. */
+    public Outcome join(String groupId, String userId) {
+        Group group = findGroup(groupId);
+        if (group == null) {
+            return Outcome.NOT_FOUND;
+        }
+        if (!Boolean.TRUE.equals(group.getIsPublic())) {
+            return Outcome.FORBIDDEN;
+        }
+        return add(groupId, userId, GroupMembership.MEMBER) ? Outcome.CHANGED : Outcome.UNCHANGED;
+    }
+
+    public Outcome leave(String groupId, String userId) {
+        Group group = findGroup(groupId);
+        if (group == null) {
+            return Outcome.NOT_FOUND;
+        }
+        if (userId.equals(group.getCreatorId())) {
+            return Outcome.FORBIDDEN;
+        }
+        return remove(groupId, userId) ? Outcome.CHANGED : Outcome.UNCHANGED;
+    }
+
+    /**
+     * Makes a member an admin. {@code requesterId} must be an admin itself.
+     * NOT_FOUND covers a missing group and a non-member.
+     */
+    public Outcome promote(String groupId, String userId, String requesterId) {
+        if (!isAdmin(groupId, requesterId)) {
+            return exists(groupId) ? Outcome.FORBIDDEN : Outcome.NOT_FOUND;
+        }
+        GroupMembership before = mongoTemplate.findAndModify(byMember(groupId, userId),
+                Update.update("role", GroupMembership.ADMIN), GroupMembership.class);
+        if (before == null) {
+            return Outcome.NOT_FOUND;
+        }
+        return GroupMembership.ADMIN.equals(before.getRole()) ? Outcome.UNCHANGED : Outcome.CHANGED;
+    }
+
+    public boolean isAdmin(String groupId, String userId) {
+        return mongoTemplate.exists(Query.query(Criteria.where("groupId").is(groupId).and("userId").is(userId)
+                .and("role").is(GroupMembership.ADMIN)), GroupMembership.class);
+    }
+
+    /** Members in join order, optionally only those with {@code role}. */
+    public CursorPage<GroupMembership> members(String groupId, String role, String cursor, int limit) {
+        KeysetCursor position = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        Criteria filter = Criteria.where("groupId").is(groupId);
+        if (role != null) {
+            // Stored lower case, as GroupMembership.MEMBER and ADMIN; accept ?role=ADMIN too
+            filter.and("role").is(role.toLowerCase(Locale.ROOT));
+        }
+        Query query = new Query(KeysetCursor.and(filter, position == null ? null : position.after("joinedAt", "id")))
+                .with(Sort.by(Sort.Direction.ASC, "joinedAt", "id"))
+                .limit(limit + 1);
+        return CursorPage.of(mongoTemplate.find(query, GroupMembership.class), limit,
+                membership -> KeysetCursor.of(membership.getJoinedAt(), membership.getId()).encode());
+    }
+
+    public List<String> groupIdsOf(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "joinedAt"));
+        query.fields().include("groupId");
+        return mongoTemplate.find(query, GroupMembership.class).stream().map(GroupMembership::getGroupId).toList();
+    }
+
+    /**
+     * Makes the group's members exactly {@code userIds} plus the creator,
+     * for the legacy replace-the-list endpoint. Members who stay keep their
+     * role and join date.
+     */
+    public void replaceMembers(Group group, Collection<String> userIds) {
+        Set<String> wanted = new LinkedHashSet<>(userIds);
+        wanted.add(group.getCreatorId());
+        mongoTemplate.remove(Query.query(Criteria.where("groupId").is(group.getId()).and("userId").nin(wanted)),
+                GroupMembership.class);
+        upsertAll(group.getId(), wanted, null, new Date());
+        recount(group.getId());
+    }
+
+    /**
+     * Makes exactly {@code userIds} plus the creator admins, for the legacy
+     * replace-the-list endpoint. Admins not listed become plain members;
+     * listed users who were not members join as admins.
+     */
+    public void replaceAdmins(Group group, Collection<String> userIds) {
+        Set<String> wanted = new LinkedHashSet<>(userIds);
+        wanted.add(group.getCreatorId());
+        mongoTemplate.updateMulti(Query.query(Criteria.where("groupId").is(group.getId())
+                        .and("role").is(GroupMembership.ADMIN).and("userId").nin(wanted)),
+                Update.update("role", GroupMembership.MEMBER), GroupMembership.class);
+        upsertAll(group.getId(), wanted, GroupMembership.ADMIN, new Date());
+        recount(group.getId());
+    }
+
+    // Sets memberCount from the memberships themselves, for bulk changes that do not count as they go
+    public long recount(String groupId) {
+        long count = mongoTemplate.count(Query.query(Criteria.where("groupId").is(groupId)), GroupMembership.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId)), Update.update("memberCount", count),
+                Group.class);
+        return count;
+    }
+
+    // The unique index makes the upsert the membership check: only the call that inserts moves the count
+    private boolean add(String groupId, String userId, String role) {
+        try {
+            return outboxService.inTransaction(() -> {
+                boolean inserted = mongoTemplate.upsert(byMember(groupId, userId),
+                        new Update().setOnInsert("role", role).setOnInsert("joinedAt", new Date()),
+                        GroupMembership.class).getUpsertedId() != null;
+                if (inserted) {
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId)),
+                            new Update().inc("memberCount", 1), Group.class);
+                }
+                return inserted;
+            });
+        } catch (DuplicateKeyException e) {
+            // A concurrent request added the same member first
+            return false;
+        }
+    }
+
+    private boolean remove(String groupId, String userId) {
+        return outboxService.inTransaction(() -> {
+            if (mongoTemplate.remove(byMember(groupId, userId), GroupMembership.class).getDeletedCount() == 0) {
+                return false;
+            }
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId)),
+                    new Update().inc("memberCount", -1), Group.class);
+            return true;
+        });
+    }
+
+    // role null keeps the role of existing members and makes new ones plain members
+    private void upsertAll(String groupId, Collection<String> userIds, String role, Date joinedAt) {
+        List<String> batch = new ArrayList<>(batchSize);
+        for (String userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            batch.add(userId);
+            if (batch.size() >= batchSize) {
+                upsertBatch(groupId, batch, role, joinedAt);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsertBatch(groupId, batch, role, joinedAt);
+        }
+    }
+
+    private void upsertBatch(String groupId, List<String> userIds, String role, Date joinedAt) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, GroupMembership.class);
+        for (String userId : userIds) {
+            Update update = new Update().setOnInsert("joinedAt", joinedAt);
+            if (role != null) {
+                update.set("role", role);
+            } else {
+                update.setOnInsert("role", GroupMembership.MEMBER);
+            }
+            bulk.upsert(byMember(groupId, userId), update);
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // Racing upserts of the same membership; it exists either way
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    private Group findGroup(String groupId) {
+        Query query = Query.query(Criteria.where("id").is(groupId));
+        query.fields().include("creatorId", "isPublic");
+        return mongoTemplate.findOne(query, Group.class);
+    }
+
+    private boolean exists(String groupId) {
+        return mongoTemplate.exists(Query.query(Criteria.where("id").is(groupId)), Group.class);
+    }
+
+    private static Query byMember(String groupId, String userId) {
+        return Query.query(Criteria.where("groupId").is(groupId).and("userId").is(userId));
+    }
+
+    private static GroupMembership membership(String groupId, String userId, String role, Date joinedAt) {
+        GroupMembership membership = new GroupMembership();
+        membership.setGroupId(groupId);
+        membership.setUserId(userId);
+        membership.setRole(role);
+        membership.setJoinedAt(joinedAt);
+        return membership;
+    }
+
+    // Groups are read raw because the arrays are no longer mapped on Group
+    void migrate() {
+        Document legacy = new Document("$or", List.of(
+                new Document("memberIds", new Document("$exists", true)),
+                new Document("adminIds", new Document("$exists", true))));
+        Document fields = new Document("creatorId", 1).append("createdAt", 1)
+                .append("memberIds", 1).append("adminIds", 1);
+
+        int migrated = 0;
+        // Small batches: a legacy group document can carry a very large array
+        for (Document group : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Group.class))
+                .find(legacy).projection(fields).batchSize(10)) {
+            migrateGroup(group);
+            migrated++;
+        }
+        if (migrated > 0) {
+            log.info("Migrated members of {} groups to memberships", migrated);
+        }
+    }
+
+    // Upserts and a recount make a rerun after a crash harmless; the arrays go only once everything is copied
+    private void migrateGroup(Document group) {
+        Object id = group.get("_id");
+        String groupId = id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+        Date joinedAt = group.getDate("createdAt") != null ? group.getDate("createdAt") : new Date();
+        String creatorId = group.getString("creatorId");
+
+        Set<String> admins = new LinkedHashSet<>(group.getList("adminIds", String.class, List.of()));
+        if (creatorId != null) {
+            admins.add(creatorId);
+        }
+        Set<String> members = new LinkedHashSet<>(group.getList("memberIds", String.class, List.of()));
+        members.removeAll(admins);
+        upsertAll(groupId, members, null, joinedAt);
+        upsertAll(groupId, admins, GroupMembership.ADMIN, joinedAt);
+
+        recount(groupId);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId)),
+                new Update().unset("memberIds").unset("adminIds"), Group.class);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.dto.GroupFeedPage;
+import com.example.pafbackend.models.Group;
+import com.example.pafbackend.models.GroupPost;
+import com.example.pafbackend.repositories.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Group feeds, newest first, paged with a keyset cursor on (timestamp, id),
+ * with the group's pinned posts above the first page.
+ *
+ * First pages of the default size are kept in a small LRU cache, so a busy
+ * group's landing page does not query Mongo on every view. Every write to a
+ * group's posts evicts its entry; the TTL only bounds staleness from writes
+ * made on other nodes.
+ *
+ * {@code Group.postCount} moves in the same transaction as the post it
+ * counts. Groups from before it existed are counted once the application is
+ * ready.
+ */
+@Slf4j
+@Service
+public class GroupPostService {
+
+    private final MongoTemplate mongoTemplate;
+    private final OutboxService outboxService;
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("group-post-count-"));
+
+    private final Map<String, CachedPage> firstPages;
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${groups.posts.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${groups.posts.max-pinned:5}")
+    private int maxPinned;
+
+    @Value("${groups.posts.cache.ttl-ms:30000}")
+    private long cacheTtlMs;
+
+    @Value("${groups.posts.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    private record CachedPage(GroupFeedPage page, long expiresAt) {
+    }
+
+    public GroupPostService(MongoTemplate mongoTemplate, OutboxService outboxService,
+                            @Value("${groups.posts.cache.max-groups:1000}") int maxCachedGroups) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxService = outboxService;
+        // Access order plus removeEldestEntry: the least recently viewed group is dropped first
+        this.firstPages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > maxCachedGroups;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfiller.execute(() -> {
+            try {
+                backfillPostCounts();
+            } catch (Exception e) {
+                log.error("Backfilling group post counts failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfiller.shutdownNow();
+    }
+
+    /**
+     * One page of the group's unpinned posts, newest first; the first page
+     * also carries the pinned posts.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public GroupFeedPage feed(String groupId, String cursor, int limit) {
+        boolean first = cursor == null || cursor.isBlank();
+        boolean cacheable = first && limit == defaultPageSize;
+        long now = System.currentTimeMillis();
+        if (cacheable) {
+            CachedPage cached;
+            synchronized (firstPages) {
+                cached = firstPages.get(groupId);
+            }
+            if (cached != null && cached.expiresAt() > now) {
+                return cached.page();
+            }
+        }
+
+        long seen = generation.get();
+        KeysetCursor position = first ? null : KeysetCursor.decode(cursor);
+        Query query = new Query(KeysetCursor.and(
+                Criteria.where("groupId").is(groupId).and("pinned").ne(true),
+                position == null ? null : position.before("timestamp", "id")))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "id"))
+                .limit(limit + 1);
+        CursorPage<GroupPost> posts = CursorPage.of(mongoTemplate.find(query, GroupPost.class), limit,
+                post -> KeysetCursor.of(post.getTimestamp(), post.getId()).encode());
+
+        GroupFeedPage page = new GroupFeedPage();
+        page.setItems(posts.getItems());
+        page.setNextCursor(posts.getNextCursor());
+        page.setHasMore(posts.isHasMore());
+        if (first) {
+            page.setPinned(pinned(groupId));
+        }
+
+        if (cacheable) {
+            synchronized (firstPages) {
+                firstPages.put(groupId, new CachedPage(page, now + cacheTtlMs));
+                if (generation.get() != seen) {
+                    // A write landed while we were reading; the page may already be stale
+                    firstPages.remove(groupId);
+                }
+            }
+        }
+        return page;
+    }
+
+    public GroupPost create(GroupPost post) {
+        post.setId(null);
+        post.setTimestamp(new Date());
+        post.setPinned(false);
+        post.setPinnedAt(null);
+        GroupPost saved = outboxService.inTransaction(() -> {
+            GroupPost inserted = mongoTemplate.insert(post);
+            adjustPostCount(inserted.getGroupId(), 1);
+            return inserted;
+        });
+        invalidate(saved.getGroupId());
+        return saved;
+    }
+
+    /** Changes the post's content and media; returns null when it does not exist. */
+    public GroupPost update(String id, GroupPost details) {
+        Update update = new Update()
+                .set("content", details.getContent())
+                .set("mediaUrl", details.getMediaUrl())
+                .set("mediaType", details.getMediaType());
+        GroupPost updated = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), GroupPost.class);
+        if (updated != null) {
+            invalidate(updated.getGroupId());
+        }
+        return updated;
+    }
+
+    public boolean delete(String id) {
+        GroupPost removed = outboxService.inTransaction(() -> {
+            GroupPost post = mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), GroupPost.class);
+            if (post != null) {
+                adjustPostCount(post.getGroupId(), -1);
+            }
+            return post;
+        });
+        if (removed == null) {
+            return false;
+        }
+        invalidate(removed.getGroupId());
+        return true;
+    }
+
+    public GroupPost find(String id) {
+        return mongoTemplate.findById(id, GroupPost.class);
+    }
+
+    /**
+     * Pins or unpins the post and returns it, or null when it does not exist.
+     *
+     * @throws IllegalStateException if the group already has groups.posts.max-pinned pinned posts
+     */
+    public GroupPost setPinned(GroupPost post, boolean pinned) {
+        if (!pinned) {
+            GroupPost updated = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(post.getId())),
+                    new Update().set("pinned", false).unset("pinnedAt"),
+                    FindAndModifyOptions.options().returnNew(true), GroupPost.class);
+            invalidate(post.getGroupId());
+            return updated;
+        }
+        if (!post.isPinned() && countPinned(post.getGroupId()) >= maxPinned) {
+            throw new IllegalStateException("Group already has " + maxPinned + " pinned posts");
+        }
+        // Only the call that flips the flag may have pushed the group over the cap
+        GroupPost updated = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(post.getId()).and("pinned").ne(true)),
+                new Update().set("pinned", true).set("pinnedAt", new Date()),
+                FindAndModifyOptions.options().returnNew(true), GroupPost.class);
+        if (updated == null) {
+            // Already pinned, or gone
+            return find(post.getId());
+        }
+        invalidate(post.getGroupId());
+        if (countPinned(post.getGroupId()) > maxPinned) {
+            // Concurrent pins both passed the check above; undo ours. Racing pins may all back out, never all stay
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(updated.getId())
+                            .and("pinnedAt").is(updated.getPinnedAt())),
+                    new Update().set("pinned", false).unset("pinnedAt"), GroupPost.class);
+            invalidate(post.getGroupId());
+            throw new IllegalStateException("Group already has " + maxPinned + " pinned posts");
+        }
+        return updated;
+    }
+
+    public void invalidate(String groupId) {
+        generation.incrementAndGet();
+        synchronized (firstPages) {
+            firstPages.remove(groupId);
+        }
+    }
+
+    private List<GroupPost> pinned(String groupId) {
+        Query query = Query.query(Criteria.where("groupId").is(groupId).and("pinned").is(true))
+                .with(Sort.by(Sort.Direction.DESC, "pinnedAt"))
+                .limit(maxPinned);
+        return mongoTemplate.find(query, GroupPost.class);
+    }
+
+    private long countPinned(String groupId) {
+        return mongoTemplate.count(Query.query(Criteria.where("groupId").is(groupId).and("pinned").is(true)),
+                GroupPost.class);
+    }
+
+    // A group not backfilled yet is left alone; $inc would create a count that the backfill then skips
+    private void adjustPostCount(String groupId, long delta) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId).and("postCount").exists(true)),
+                new Update().inc("postCount", delta), Group.class);
+    }
+
+    void backfillPostCounts() {
+        Query query = Query.query(Criteria.where("postCount").exists(false));
+        query.fields().include("id");
+
+        int[] updated = {0};
+        List<String> batch = new ArrayList<>(backfillBatchSize);
+        try (Stream<Group> groups = mongoTemplate.stream(query, Group.class)) {
+            groups.forEach(group -> {
+                batch.add(group.getId());
+                if (batch.size() >= backfillBatchSize) {
+                    updated[0] += backfillBatch(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            updated[0] += backfillBatch(batch);
+        }
+        if (updated[0] > 0) {
+            log.info("Backfilled post counts on {} groups", updated[0]);
+        }
+    }
+
+    // One aggregation counts the posts of the whole batch
+    private int backfillBatch(List<String> groupIds) {
+        Aggregation counts = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("groupId").in(groupIds)),
+                Aggregation.group("groupId").count().as("count"));
+        Map<String, Long> byGroup = new HashMap<>();
+        mongoTemplate.aggregate(counts, GroupPost.class, Document.class)
+                .forEach(row -> byGroup.put(row.getString("_id"), ((Number) row.get("count")).longValue()));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Group.class);
+        for (String groupId : groupIds) {
+            // Only where still missing, so a count a concurrent post already moved is not overwritten
+            bulk.updateOne(Query.query(Criteria.where("id").is(groupId).and("postCount").exists(false)),
+                    Update.update("postCount", byGroup.getOrDefault(groupId, 0L)));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+}
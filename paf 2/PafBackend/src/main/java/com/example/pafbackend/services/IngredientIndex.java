@@ -0,0 +1,350 @@
+package com.example.pafbackend.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Ingredient dictionary plus one {@link CompactBitmap} of recipe ordinals per
+ * ingredient.
+ *
+ * Matching a pantry walks the pantry's bitmaps one 2^16-ordinal chunk at a
+ * time and counts, per recipe, how many pantry ingredients it contains. The
+ * work is proportional to the set bits of the pantry's bitmaps; recipes that
+ * share nothing with the pantry are never visited. Ordinals freed by removals
+ * are reused, so the bitmaps stay dense without compaction.
+ *
+ * Thread-safe; matches share a read lock and writes take the write lock.
+ */
+final class IngredientIndex {
+
+    private static final int BUILD_SLICE = 4096;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ingredientIds = new HashMap<>();
+    private final List<String> ingredientNames = new ArrayList<>();
+    private final List<CompactBitmap> bitmaps = new ArrayList<>(); // by ingredient id
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] keys = new String[1024];
+    private String[] titles = new String[1024];
+    private int[][] recipeIngredients = new int[1024][]; // sorted ingredient ids, null for a free ordinal
+    private int nextOrdinal;
+    private int[] freeOrdinals = new int[64];
+    private int freeCount;
+
+    public static final class Recipe {
+        private final String key;
+        private final String title;
+        private final Collection<String> ingredients;
+
+        Recipe(String key, String title, Collection<String> ingredients) {
+            this.key = key;
+            this.title = title;
+            this.ingredients = ingredients;
+        }
+    }
+
+    public static final class Match {
+        private final String key;
+        private final String title;
+        private final List<String> matched;
+        private final List<String> missing;
+
+        Match(String key, String title, List<String> matched, List<String> missing) {
+            this.key = key;
+            this.title = title;
+            this.matched = matched;
+            this.missing = missing;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public List<String> getMatched() {
+            return matched;
+        }
+
+        public List<String> getMissing() {
+            return missing;
+        }
+
+        public double getCoverage() {
+            return (double) matched.size() / (matched.size() + missing.size());
+        }
+    }
+
+    /**
+     * Builds an index over normalized recipes on the given pool. Slices of the
+     * list build private name-to-bitmap maps that are OR-ed together on the
+     * way back up, so workers never contend on a shared structure.
+     */
+    public static IngredientIndex build(List<Recipe> recipes, ForkJoinPool pool) {
+        Map<String, CompactBitmap> byName = pool.invoke(new BuildTask(recipes, 0, recipes.size()));
+
+        IngredientIndex index = new IngredientIndex();
+        List<String> names = new ArrayList<>(byName.keySet());
+        names.sort(null);
+        for (String name : names) {
+            index.ingredientIds.put(name, index.ingredientNames.size());
+            index.ingredientNames.add(name);
+            index.bitmaps.add(byName.get(name));
+        }
+
+        int count = recipes.size();
+        index.keys = new String[Math.max(1024, count)];
+        index.titles = new String[index.keys.length];
+        index.recipeIngredients = new int[index.keys.length][];
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(ordinal ->
+                index.recipeIngredients[ordinal] = index.idsOf(recipes.get(ordinal).ingredients))).join();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            Recipe recipe = recipes.get(ordinal);
+            Integer previous = index.ordinals.put(recipe.key, ordinal);
+            if (previous != null) {
+                // Same recipe listed twice; the later copy wins
+                index.releaseOrdinal(previous);
+            }
+            index.keys[ordinal] = recipe.key;
+            index.titles[ordinal] = recipe.title;
+        }
+        index.nextOrdinal = count;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (index.keys[ordinal] != null && index.recipeIngredients[ordinal].length == 0) {
+                index.ordinals.remove(index.keys[ordinal]);
+                index.releaseOrdinal(ordinal);
+            }
+        }
+        return index;
+    }
+
+    public void put(String key, String title, Collection<String> ingredients) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.remove(key);
+            if (existing != null) {
+                releaseOrdinal(existing);
+            }
+            if (ingredients.isEmpty()) {
+                return;
+            }
+            int ordinal = freeCount > 0 ? freeOrdinals[--freeCount] : nextOrdinal++;
+            if (ordinal >= keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                recipeIngredients = Arrays.copyOf(recipeIngredients, capacity);
+            }
+            int[] ids = new int[ingredients.size()];
+            int n = 0;
+            for (String name : new LinkedHashSet<>(ingredients)) {
+                Integer id = ingredientIds.get(name);
+                if (id == null) {
+                    id = ingredientNames.size();
+                    ingredientIds.put(name, id);
+                    ingredientNames.add(name);
+                    bitmaps.add(new CompactBitmap());
+                }
+                bitmaps.get(id).add(ordinal);
+                ids[n++] = id;
+            }
+            ids = Arrays.copyOf(ids, n);
+            Arrays.sort(ids);
+            ordinals.put(key, ordinal);
+            keys[ordinal] = key;
+            titles[ordinal] = title;
+            recipeIngredients[ordinal] = ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(key);
+            if (ordinal == null) {
+                return false;
+            }
+            releaseOrdinal(ordinal);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recipes sharing at least one ingredient with the pantry, best coverage
+     * (matched / total ingredients) first, then most matched ingredients.
+     * Recipes missing more than {@code maxMissing} ingredients are skipped.
+     */
+    public List<Match> match(Collection<String> pantry, int limit, int maxMissing) {
+        lock.readLock().lock();
+        try {
+            List<CompactBitmap> selected = new ArrayList<>();
+            Set<Integer> pantryIds = new HashSet<>();
+            for (String name : pantry) {
+                Integer id = ingredientIds.get(name);
+                if (id != null && pantryIds.add(id)) {
+                    selected.add(bitmaps.get(id));
+                }
+            }
+            if (selected.isEmpty() || limit <= 0) {
+                return List.of();
+            }
+
+            PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, IngredientIndex::compareCandidates);
+            short[] counts = new short[1 << 16];
+            char[] touched = new char[1 << 16];
+            int[] cursors = new int[selected.size()];
+            while (true) {
+                // Next chunk present in any selected bitmap; all bitmaps are walked in key order together
+                int key = Integer.MAX_VALUE;
+                for (int i = 0; i < selected.size(); i++) {
+                    if (cursors[i] < selected.get(i).chunkCount()) {
+                        key = Math.min(key, selected.get(i).chunkKey(cursors[i]));
+                    }
+                }
+                if (key == Integer.MAX_VALUE) {
+                    break;
+                }
+                int[] touchedCount = {0};
+                for (int i = 0; i < selected.size(); i++) {
+                    CompactBitmap bitmap = selected.get(i);
+                    if (cursors[i] < bitmap.chunkCount() && bitmap.chunkKey(cursors[i]) == key) {
+                        bitmap.forEachInChunk(cursors[i]++, low -> {
+                            if (counts[low]++ == 0) {
+                                touched[touchedCount[0]++] = (char) low;
+                            }
+                        });
+                    }
+                }
+                int high = key << 16;
+                for (int t = 0; t < touchedCount[0]; t++) {
+                    char low = touched[t];
+                    int ordinal = high | low;
+                    int matched = counts[low];
+                    counts[low] = 0;
+                    int total = recipeIngredients[ordinal].length;
+                    if (total - matched > maxMissing) {
+                        continue;
+                    }
+                    long[] candidate = {ordinal, matched, total};
+                    if (top.size() < limit || compareCandidates(candidate, top.peek()) > 0) {
+                        top.offer(candidate);
+                        if (top.size() > limit) {
+                            top.poll();
+                        }
+                    }
+                }
+            }
+
+            List<long[]> ranked = new ArrayList<>(top);
+            ranked.sort((a, b) -> compareCandidates(b, a));
+            List<Match> matches = new ArrayList<>(ranked.size());
+            for (long[] candidate : ranked) {
+                int ordinal = (int) candidate[0];
+                List<String> matched = new ArrayList<>();
+                List<String> missing = new ArrayList<>();
+                for (int id : recipeIngredients[ordinal]) {
+                    (pantryIds.contains(id) ? matched : missing).add(ingredientNames.get(id));
+                }
+                matches.add(new Match(keys[ordinal], titles[ordinal], matched, missing));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Candidates are {ordinal, matched, total}; coverage compared by cross-multiplying
+    private static int compareCandidates(long[] a, long[] b) {
+        int byCoverage = Long.compare(a[1] * b[2], b[1] * a[2]);
+        if (byCoverage != 0) {
+            return byCoverage;
+        }
+        int byMatched = Long.compare(a[1], b[1]);
+        return byMatched != 0 ? byMatched : Long.compare(b[0], a[0]);
+    }
+
+    private void releaseOrdinal(int ordinal) {
+        int[] ids = recipeIngredients[ordinal];
+        if (ids != null) {
+            for (int id : ids) {
+                bitmaps.get(id).remove(ordinal);
+            }
+        }
+        keys[ordinal] = null;
+        titles[ordinal] = null;
+        recipeIngredients[ordinal] = null;
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+    }
+
+    private int[] idsOf(Collection<String> names) {
+        return names.stream().mapToInt(ingredientIds::get).distinct().sorted().toArray();
+    }
+
+    private static final class BuildTask extends RecursiveTask<Map<String, CompactBitmap>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Recipe> recipes;
+        private final int from;
+        private final int to;
+
+        BuildTask(List<Recipe> recipes, int from, int to) {
+            this.recipes = recipes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, CompactBitmap> compute() {
+            if (to - from <= BUILD_SLICE) {
+                Map<String, CompactBitmap> byName = new HashMap<>();
+                for (int ordinal = from; ordinal < to; ordinal++) {
+                    for (String name : recipes.get(ordinal).ingredients) {
+                        byName.computeIfAbsent(name, n -> new CompactBitmap()).add(ordinal);
+                    }
+                }
+                return byName;
+            }
+            int mid = (from + to) >>> 1;
+            BuildTask left = new BuildTask(recipes, from, mid);
+            left.fork();
+            Map<String, CompactBitmap> merged = new BuildTask(recipes, mid, to).compute();
+            for (Map.Entry<String, CompactBitmap> entry : left.join().entrySet()) {
+                merged.merge(entry.getKey(), entry.getValue(), (a, b) -> {
+                    a.or(b);
+                    return a;
+                });
+            }
+            return merged;
+        }
+    }
+}
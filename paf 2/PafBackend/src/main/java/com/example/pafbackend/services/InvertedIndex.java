@@ -0,0 +1,342 @@
+package com.example.pafbackend.services;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index scored with BM25.
+ *
+ * Documents get dense ordinals in insertion order, so every postings list is
+ * sorted and stored as variable-length (docDelta, termFrequency) pairs in a
+ * single byte array. Updates never rewrite postings: the old ordinal is
+ * tombstoned and the new version is appended. Once tombstones make up a third
+ * of the index the postings are re-encoded without them. Document frequencies
+ * include tombstoned documents until that compaction, as in Lucene.
+ *
+ * Thread-safe; searches share a read lock and writes take the write lock.
+ */
+final class InvertedIndex {
+
+    private static final int MAGIC = 0x52494458;
+    private static final int VERSION = 1;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> keys = new ArrayList<>(); // by ordinal, null once tombstoned
+    private int[] lengths = new int[1024];
+    private int tombstones;
+    private long liveLength;
+
+    public static final class Hit {
+        private final String key;
+        private final float score;
+
+        Hit(String key, float score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    public void put(String key, Map<String, Integer> termFrequencies) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            maybeCompact();
+            if (termFrequencies.isEmpty()) {
+                return;
+            }
+            int ordinal = keys.size();
+            keys.add(key);
+            ordinals.put(key, ordinal);
+            int length = 0;
+            for (Map.Entry<String, Integer> term : termFrequencies.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new PostingList()).add(ordinal, term.getValue());
+                length += term.getValue();
+            }
+            if (ordinal >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(ordinal + 1, lengths.length * 2));
+            }
+            lengths[ordinal] = length;
+            liveLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removeLocked(key);
+            maybeCompact();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean removeLocked(String key) {
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal == null) {
+            return false;
+        }
+        keys.set(ordinal, null);
+        liveLength -= lengths[ordinal];
+        tombstones++;
+        return true;
+    }
+
+    private void maybeCompact() {
+        if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones * 3 > keys.size()) {
+            compact();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Hit> search(Collection<String> terms, int limit) {
+        lock.readLock().lock();
+        try {
+            int liveDocs = ordinals.size();
+            if (liveDocs == 0 || limit <= 0) {
+                return List.of();
+            }
+            float avgLength = (float) liveLength / liveDocs;
+
+            List<PostingCursor> cursors = new ArrayList<>();
+            for (String term : new LinkedHashSet<>(terms)) {
+                PostingList list = postings.get(term);
+                if (list != null) {
+                    int docFreq = Math.min(list.docFreq, liveDocs);
+                    float idf = (float) Math.log(1 + (liveDocs - docFreq + 0.5) / (docFreq + 0.5));
+                    PostingCursor cursor = new PostingCursor(list, idf);
+                    cursor.next();
+                    cursors.add(cursor);
+                }
+            }
+            if (cursors.isEmpty()) {
+                return List.of();
+            }
+
+            // Document-at-a-time: walk all lists in ordinal order, so no per-query accumulator is needed
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, (a, b) -> Float.compare(a.score, b.score));
+            while (true) {
+                int doc = Integer.MAX_VALUE;
+                for (PostingCursor cursor : cursors) {
+                    doc = Math.min(doc, cursor.doc);
+                }
+                if (doc == Integer.MAX_VALUE) {
+                    break;
+                }
+                float score = 0;
+                float norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                for (PostingCursor cursor : cursors) {
+                    if (cursor.doc == doc) {
+                        score += cursor.idf * cursor.tf * (K1 + 1) / (cursor.tf + norm);
+                        cursor.next();
+                    }
+                }
+                String key = keys.get(doc);
+                if (key != null && (top.size() < limit || score > top.peek().score)) {
+                    top.offer(new Hit(key, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort((a, b) -> Float.compare(b.score, a.score));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Renumbers live documents densely and re-encodes every postings list without tombstones
+    private void compact() {
+        int[] remap = new int[keys.size()];
+        List<String> liveKeys = new ArrayList<>(ordinals.size());
+        int[] liveLengths = new int[Math.max(1024, ordinals.size())];
+        for (int ordinal = 0; ordinal < keys.size(); ordinal++) {
+            String key = keys.get(ordinal);
+            if (key == null) {
+                remap[ordinal] = -1;
+            } else {
+                remap[ordinal] = liveKeys.size();
+                liveLengths[liveKeys.size()] = lengths[ordinal];
+                ordinals.put(key, liveKeys.size());
+                liveKeys.add(key);
+            }
+        }
+
+        postings.entrySet().removeIf(entry -> {
+            PostingList rewritten = new PostingList();
+            PostingCursor cursor = new PostingCursor(entry.getValue(), 0);
+            while (cursor.next()) {
+                if (remap[cursor.doc] >= 0) {
+                    rewritten.add(remap[cursor.doc], cursor.tf);
+                }
+            }
+            entry.setValue(rewritten);
+            return rewritten.docFreq == 0;
+        });
+
+        keys.clear();
+        keys.addAll(liveKeys);
+        lengths = liveLengths;
+        tombstones = 0;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.size());
+            for (int ordinal = 0; ordinal < keys.size(); ordinal++) {
+                String key = keys.get(ordinal);
+                out.writeBoolean(key != null);
+                out.writeUTF(key == null ? "" : key);
+                out.writeInt(lengths[ordinal]);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+                PostingList list = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(list.docFreq);
+                out.writeInt(list.lastDoc);
+                out.writeInt(list.length);
+                out.write(list.data, 0, list.length);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static InvertedIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an index snapshot or unsupported version");
+        }
+        InvertedIndex index = new InvertedIndex();
+        int docCount = in.readInt();
+        index.lengths = new int[Math.max(1024, docCount)];
+        for (int ordinal = 0; ordinal < docCount; ordinal++) {
+            boolean live = in.readBoolean();
+            String key = in.readUTF();
+            int length = in.readInt();
+            index.lengths[ordinal] = length;
+            if (live) {
+                index.keys.add(key);
+                index.ordinals.put(key, ordinal);
+                index.liveLength += length;
+            } else {
+                index.keys.add(null);
+                index.tombstones++;
+            }
+        }
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readUTF();
+            PostingList list = new PostingList();
+            list.docFreq = in.readInt();
+            list.lastDoc = in.readInt();
+            list.length = in.readInt();
+            list.data = new byte[Math.max(8, list.length)];
+            in.readFully(list.data, 0, list.length);
+            index.postings.put(term, list);
+        }
+        return index;
+    }
+
+    private static final class PostingList {
+        private byte[] data = new byte[8];
+        private int length;
+        private int lastDoc = -1;
+        private int docFreq;
+
+        void add(int doc, int tf) {
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            length = writeVarInt(data, length, doc - lastDoc);
+            length = writeVarInt(data, length, tf);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        private static int writeVarInt(byte[] buffer, int offset, int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[offset++] = (byte) value;
+            return offset;
+        }
+    }
+
+    private static final class PostingCursor {
+        private final byte[] data;
+        private final int end;
+        private final float idf;
+        private int position;
+        private int doc = -1;
+        private int tf;
+
+        PostingCursor(PostingList list, float idf) {
+            this.data = list.data;
+            this.end = list.length;
+            this.idf = idf;
+        }
+
+        boolean next() {
+            if (position >= end) {
+                doc = Integer.MAX_VALUE;
+                return false;
+            }
+            doc += readVarInt();
+            tf = readVarInt();
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
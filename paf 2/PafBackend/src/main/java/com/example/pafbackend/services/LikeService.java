@@ -0,0 +1,207 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.OutboxEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Likes keyed by (postId, userId): liking twice is a no-op, and a LikeAdded or
+ * LikeRemoved outbox event, which moves the post's like counter and the
+ * trending scores, is only recorded when a like is actually added or removed.
+ *
+ * A unique index on (postId, userId) enforces this. It is created in code
+ * once the application is ready, after duplicates from before it existed
+ * have been merged, because an annotation-driven unique index would fail
+ * at startup on such data.
+ */
+@Slf4j
+@Service
+public class LikeService {
+
+    private static final String UNIQUE_INDEX = "post_user_unique_idx";
+
+    private final MongoTemplate mongoTemplate;
+    private final PostCounterService postCounterService;
+    private final OutboxService outboxService;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final ExecutorService migrator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("like-index-"));
+
+    public LikeService(MongoTemplate mongoTemplate, PostCounterService postCounterService, OutboxService outboxService,
+                       LikeWriteBuffer likeWriteBuffer) {
+        this.mongoTemplate = mongoTemplate;
+        this.postCounterService = postCounterService;
+        this.outboxService = outboxService;
+        this.likeWriteBuffer = likeWriteBuffer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueIndex() {
+        migrator.execute(() -> {
+            // A like inserted between the dedupe and the index build fails the build; one more pass catches it
+            for (int attempt = 1; attempt <= 2; attempt++) {
+                try {
+                    removeDuplicates();
+                    mongoTemplate.indexOps(Like.class).ensureIndex(new Index()
+                            .on("postId", Sort.Direction.ASC)
+                            .on("userId", Sort.Direction.ASC)
+                            .unique()
+                            .named(UNIQUE_INDEX));
+                    return;
+                } catch (DuplicateKeyException | UncategorizedMongoDbException e) {
+                    log.warn("Creating the unique like index failed (attempt {})", attempt, e);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdownNow();
+    }
+
+    // When true, setLiked only queues the change and its return value says nothing about the outcome
+    public boolean isWriteBehind() {
+        return likeWriteBuffer.isEnabled();
+    }
+
+    /**
+     * Makes the like exist or not. Returns true when something changed, so a
+     * retried or double-tapped request is harmless. In write-behind mode the
+     * change is queued for the next flush and this always returns true.
+     */
+    public boolean setLiked(String postId, String userId, boolean liked) {
+        if (likeWriteBuffer.isEnabled()) {
+            likeWriteBuffer.enqueue(postId, userId, liked);
+            return true;
+        }
+        Query query = Query.query(Criteria.where("postId").is(postId).and("userId").is(userId));
+        if (!liked) {
+            return remove(query);
+        }
+
+        try {
+            return outboxService.inTransaction(() -> {
+                BsonValue insertedId = mongoTemplate.upsert(query,
+                        new Update().setOnInsert("postId", postId).setOnInsert("userId", userId),
+                        Like.class).getUpsertedId();
+                if (insertedId == null) {
+                    return false;
+                }
+                outboxService.record(event(OutboxEvent.LIKE_ADDED,
+                        new Like(insertedId.asObjectId().getValue().toHexString(), postId, userId)));
+                return true;
+            });
+        } catch (DuplicateKeyException e) {
+            // A concurrent request inserted the same like first
+            return false;
+        }
+    }
+
+    public Like findLike(String postId, String userId) {
+        return mongoTemplate.findOne(Query.query(Criteria.where("postId").is(postId).and("userId").is(userId)), Like.class);
+    }
+
+    public boolean removeById(String likeId) {
+        return remove(Query.query(Criteria.where("id").is(likeId)));
+    }
+
+    // findAndRemove tells us which post lost the like, and only the caller that removed it records the event
+    private boolean remove(Query query) {
+        return outboxService.inTransaction(() -> {
+            Like removed = mongoTemplate.findAndRemove(query, Like.class);
+            if (removed == null) {
+                return false;
+            }
+            outboxService.record(event(OutboxEvent.LIKE_REMOVED, removed));
+            return true;
+        });
+    }
+
+    /**
+     * Which of the posts the user has liked. Filters and returns only the
+     * fields of the unique index with {@code _id} excluded, so Mongo answers
+     * from the index without fetching documents. Changes still waiting in the
+     * write-behind buffer take precedence, so users see their own likes.
+     */
+    public Set<String> likedPostIds(String userId, Collection<String> postIds) {
+        Set<String> liked = new HashSet<>();
+        if (userId == null || postIds.isEmpty()) {
+            return liked;
+        }
+        Query query = Query.query(Criteria.where("postId").in(postIds).and("userId").is(userId));
+        query.fields().include("postId").exclude("_id");
+        mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Like.class))
+                .forEach(row -> liked.add(row.getString("postId")));
+        if (likeWriteBuffer.isEnabled()) {
+            for (String postId : postIds) {
+                Boolean pending = likeWriteBuffer.pendingState(postId, userId);
+                if (Boolean.TRUE.equals(pending)) {
+                    liked.add(postId);
+                } else if (Boolean.FALSE.equals(pending)) {
+                    liked.remove(postId);
+                }
+            }
+        }
+        return liked;
+    }
+
+    static OutboxEvent event(String type, Like like) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("likeId", like.getId());
+        payload.put("postId", like.getPostId());
+        payload.put("userId", like.getUserId());
+        return OutboxEvent.of(type, "post", like.getPostId(), payload);
+    }
+
+    // Keeps the oldest like of each (postId, userId) pair and takes the extras off the post's counter
+    void removeDuplicates() {
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.group("postId", "userId").push("_id").as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        int removed = 0;
+        for (Document group : mongoTemplate.aggregate(duplicates, Like.class, Document.class)) {
+            List<Object> ids = group.getList("ids", Object.class);
+            Document key = group.get("_id", Document.class);
+            // ObjectIds sort by creation time
+            List<Object> extras = ids.stream()
+                    .sorted((a, b) -> String.valueOf(a).compareTo(String.valueOf(b)))
+                    .skip(1)
+                    .toList();
+            long deleted = mongoTemplate.remove(Query.query(Criteria.where("_id").in(extras)), Like.class)
+                    .getDeletedCount();
+            postCounterService.adjustLikeCount(key.getString("postId"), -deleted);
+            removed += (int) deleted;
+        }
+        if (removed > 0) {
+            log.info("Removed {} duplicate likes", removed);
+        }
+    }
+}
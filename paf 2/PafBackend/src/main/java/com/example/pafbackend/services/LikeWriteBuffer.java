@@ -0,0 +1,404 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.OutboxEvent;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Optional write-behind path for likes ({@code likes.write-behind.enabled}).
+ *
+ * Requests only record the desired state of a (postId, userId) pair in one
+ * of several concurrent maps, so a like followed by an unlike before the next
+ * flush collapses into a single delete. Every {@code flush-interval-ms}, or
+ * as soon as {@code max-pending} pairs are waiting, the maps are drained into
+ * one unordered bulk write. Per-like outcomes of a bulk write are not known,
+ * so the like counters of the touched posts are recounted afterwards. The
+ * likes the write actually inserted or removed are then recorded as
+ * LikeAdded/LikeRemoved outbox events, for notifications and trending. Events
+ * whose record fails are retried on their own at the next flush; a crash
+ * between the bulk write and that record loses them.
+ *
+ * With {@code journal.enabled} every change is appended to a local journal
+ * segment before it is acknowledged. A flush first seals the current segment
+ * and deletes sealed segments once their changes are in Mongo; segments left
+ * by a crash are replayed on startup, whatever the setting now, and deleted
+ * by the first flush that writes them.
+ */
+@Slf4j
+@Service
+public class LikeWriteBuffer {
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final String SEGMENT_PREFIX = "likes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final MongoTemplate mongoTemplate;
+    private final PostCounterService postCounterService;
+    private final OutboxService outboxService;
+    private final boolean enabled;
+    private final int maxPending;
+    private final boolean journalEnabled;
+    private final boolean syncEveryWrite;
+    private final Path journalDir;
+
+    private final Map<Key, Boolean>[] stripes;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    // Events of likes already written whose record failed; retried alone, as rewriting the likes would not bring them back
+    private final Queue<OutboxEvent> unrecorded = new ConcurrentLinkedQueue<>();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("like-flush-"));
+
+    // Appenders hold the read lock across journal append and map update; sealing a segment takes the write lock
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private FileChannel segment;
+    private long segmentNumber;
+    // Segments replayed on startup; deleted by the first successful flush even with the journal off
+    private List<Path> replayed = List.of();
+
+    private record Key(String postId, String userId) {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LikeWriteBuffer(MongoTemplate mongoTemplate, PostCounterService postCounterService,
+                           OutboxService outboxService,
+                           @Value("${likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${likes.write-behind.max-pending:5000}") int maxPending,
+                           @Value("${likes.write-behind.stripes:16}") int stripes,
+                           @Value("${likes.write-behind.journal.enabled:false}") boolean journalEnabled,
+                           @Value("${likes.write-behind.journal.sync-every-write:false}") boolean syncEveryWrite,
+                           @Value("${likes.write-behind.journal.dir:data/likes-journal}") String journalDir) {
+        this.mongoTemplate = mongoTemplate;
+        this.postCounterService = postCounterService;
+        this.outboxService = outboxService;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.journalEnabled = enabled && journalEnabled;
+        this.syncEveryWrite = syncEveryWrite;
+        this.journalDir = Paths.get(journalDir);
+        this.stripes = new Map[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Segments from a previous run are replayed even if write-behind has since been switched off
+        replayed = segments(Long.MAX_VALUE);
+        for (Path path : replayed) {
+            replay(path);
+            segmentNumber = Math.max(segmentNumber, segmentNumber(path));
+        }
+        if (!replayed.isEmpty()) {
+            log.info("Replayed {} pending like changes from {} journal segments", pending.get(), replayed.size());
+        }
+        if (journalEnabled) {
+            openSegment(segmentNumber + 1);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        flusher.execute(this::flush);
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(String postId, String userId, boolean liked) {
+        Key key = new Key(postId, userId);
+        journalLock.readLock().lock();
+        try {
+            if (journalEnabled) {
+                append(key, liked);
+            }
+            if (stripe(key).put(key, liked) == null && pending.incrementAndGet() >= maxPending) {
+                requestFlush();
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    // The not-yet-flushed state of the pair, or null when nothing is pending
+    public Boolean pendingState(String postId, String userId) {
+        Key key = new Key(postId, userId);
+        return stripe(key).get(key);
+    }
+
+    @Scheduled(fixedDelayString = "${likes.write-behind.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        if (pending.get() > 0 || !unrecorded.isEmpty()) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushQueued.set(false);
+        if (!unrecorded.isEmpty()) {
+            List<OutboxEvent> retry = new ArrayList<>();
+            for (OutboxEvent event; (event = unrecorded.poll()) != null; ) {
+                retry.add(event);
+            }
+            record(retry);
+        }
+        // With the journal on, sealing returns the replayed segments too, as they are numbered below the new one
+        List<Path> sealed = journalEnabled ? sealSegment() : replayed;
+        Map<Key, Boolean> batch = drain();
+        try {
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (RuntimeException e) {
+            log.error("Flushing {} buffered like changes failed; will retry", batch.size(), e);
+            // Changes made since the drain are newer and win
+            batch.forEach((key, liked) -> {
+                if (stripe(key).putIfAbsent(key, liked) == null) {
+                    pending.incrementAndGet();
+                }
+            });
+            return;
+        }
+        for (Path path : sealed) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete flushed like journal segment {}", path, e);
+            }
+        }
+        replayed = List.of();
+    }
+
+    private Map<Key, Boolean> drain() {
+        Map<Key, Boolean> batch = new HashMap<>();
+        for (Map<Key, Boolean> stripe : stripes) {
+            for (Map.Entry<Key, Boolean> entry : stripe.entrySet()) {
+                // Conditional remove: if the pair changed meanwhile, the newer state stays for the next flush
+                if (stripe.remove(entry.getKey(), entry.getValue())) {
+                    pending.decrementAndGet();
+                    batch.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void write(Map<Key, Boolean> batch) {
+        List<Key> ops = new ArrayList<>(batch.size());
+        Set<String> postIds = new HashSet<>();
+        Set<String> userIds = new HashSet<>();
+        Set<Key> removals = new HashSet<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Like.class);
+        batch.forEach((key, liked) -> {
+            Query query = Query.query(Criteria.where("postId").is(key.postId()).and("userId").is(key.userId()));
+            if (liked) {
+                bulk.upsert(query, new Update().setOnInsert("postId", key.postId()).setOnInsert("userId", key.userId()));
+            } else {
+                bulk.remove(query);
+                removals.add(key);
+                userIds.add(key.userId());
+            }
+            ops.add(key);
+            postIds.add(key.postId());
+        });
+
+        // Read the likes about to be removed so their events carry the like that went
+        List<Like> removed = new ArrayList<>();
+        if (!removals.isEmpty()) {
+            Query existing = Query.query(Criteria.where("postId").in(postIds).and("userId").in(userIds));
+            for (Like like : mongoTemplate.find(existing, Like.class)) {
+                if (removals.contains(new Key(like.getPostId(), like.getUserId()))) {
+                    removed.add(like);
+                }
+            }
+        }
+
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            // Upserts racing a like written through the synchronous path hit the unique index; the like exists either way
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+            result = e.getResult();
+        }
+
+        // From here on the likes are written: a failure must not re-queue the batch, whose retry would match
+        // nothing and so emit no events
+        boolean recounted = recount(postIds);
+
+        List<OutboxEvent> events = new ArrayList<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            Key key = ops.get(upsert.getIndex());
+            events.add(mark(LikeService.event(OutboxEvent.LIKE_ADDED,
+                    new Like(upsert.getId().asObjectId().getValue().toHexString(), key.postId(), key.userId())), recounted));
+        }
+        removed.forEach(like -> events.add(mark(LikeService.event(OutboxEvent.LIKE_REMOVED, like), recounted)));
+        record(events);
+    }
+
+    private boolean recount(Set<String> postIds) {
+        try {
+            postCounterService.recountLikes(postIds);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Recounting likes of {} posts after a flush failed; their events move the counters instead",
+                    postIds.size(), e);
+            return false;
+        }
+    }
+
+    // When the counters were just recounted the counter consumer leaves them alone
+    private static OutboxEvent mark(OutboxEvent event, boolean recounted) {
+        if (recounted) {
+            event.getPayload().put(CounterOutboxConsumer.RECOUNTED, true);
+        }
+        return event;
+    }
+
+    private void record(List<OutboxEvent> events) {
+        try {
+            outboxService.recordAll(events);
+        } catch (RuntimeException e) {
+            log.error("Recording {} like events failed; will retry", events.size(), e);
+            unrecorded.addAll(events);
+        }
+    }
+
+    private Map<Key, Boolean> stripe(Key key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+    }
+
+    private void append(Key key, boolean liked) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeBoolean(liked);
+            out.writeUTF(key.postId());
+            out.writeUTF(key.userId());
+            // One write call per record; FileChannel serializes concurrent appends
+            segment.write(ByteBuffer.wrap(bytes.toByteArray()));
+            if (syncEveryWrite) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal like change", e);
+        }
+    }
+
+    // Starts a new segment and returns every older one; their changes are all in the maps by now
+    private List<Path> sealSegment() {
+        journalLock.writeLock().lock();
+        try {
+            segment.force(false);
+            segment.close();
+            openSegment(segmentNumber + 1);
+            return segments(segmentNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rotate like journal", e);
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        Files.createDirectories(journalDir);
+        segmentNumber = number;
+        segment = FileChannel.open(journalDir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments(long before) throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX)
+                            && segmentNumber(path) < before)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                boolean liked;
+                Key key;
+                try {
+                    liked = in.readBoolean();
+                    key = new Key(in.readUTF(), in.readUTF());
+                } catch (EOFException e) {
+                    // End of segment, or a record torn by the crash
+                    return;
+                }
+                if (stripe(key).put(key, liked) == null) {
+                    pending.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Notification;
+
+// Published on the application event bus once a notification is stored, or merged into a coalesced one
+public record NotificationCreatedEvent(Notification notification) {
+}
@@ -0,0 +1,76 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.Notification;
+import com.example.pafbackend.models.OutboxEvent;
+import com.example.pafbackend.models.Post;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Tells post authors about likes and comments, and comment authors about replies; nobody is notified of their own actions
+@Component
+public class NotificationOutboxConsumer implements OutboxConsumer {
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationService notificationService;
+
+    public NotificationOutboxConsumer(MongoTemplate mongoTemplate, NotificationService notificationService) {
+        this.mongoTemplate = mongoTemplate;
+        this.notificationService = notificationService;
+    }
+
+    @Override
+    public String name() {
+        return "notifications";
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        Map<String, Object> payload = event.getPayload();
+        String postId = (String) payload.get("postId");
+        String actorId = (String) payload.get("userId");
+        switch (event.getType()) {
+            case OutboxEvent.LIKE_ADDED ->
+                    notify(ownerOf(postId, Post.class), actorId, "like", postId, "post", "liked your recipe");
+            case OutboxEvent.COMMENT_ADDED -> {
+                String parentId = (String) payload.get("parentId");
+                if (parentId == null) {
+                    notify(ownerOf(postId, Post.class), actorId, "comment", postId, "post", "commented on your recipe");
+                } else {
+                    notify(ownerOf(parentId, Comment.class), actorId, "reply", parentId, "comment",
+                            "replied to your comment");
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void notify(String recipientId, String actorId, String type, String sourceId, String sourceType,
+                        String message) {
+        if (recipientId == null || recipientId.equals(actorId)) {
+            return;
+        }
+        Notification notification = new Notification();
+        notification.setUserId(recipientId);
+        notification.setActionUserId(actorId);
+        notification.setType(type);
+        notification.setSourceId(sourceId);
+        notification.setSourceType(sourceType);
+        notification.setMessage(message);
+        notificationService.create(notification);
+    }
+
+    private String ownerOf(String id, Class<?> type) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        query.fields().include("userId");
+        Document owner = mongoTemplate.findOne(query, Document.class,
+                mongoTemplate.getCollectionName(type));
+        return owner == null ? null : owner.getString("userId");
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Notification;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Notification writes plus a per-user unread counter kept in memory, so badge
+ * polling does not touch Mongo.
+ *
+ * Mongo stays the source of truth: a counter is loaded with a count query on
+ * first use and moved by every create, read and delete that changes a
+ * notification's unread state. Counters expire after
+ * {@code notifications.unread.ttl-ms}, which bounds drift from writes made by
+ * other instances or racing the initial count.
+ *
+ * Activity of a coalesced type ({@code notifications.coalesce.types}) on the
+ * same source within one {@code window-ms} bucket is merged into a single
+ * notification by an atomic upsert on its coalesce key, which counts the
+ * actions and keeps the last few actors. A merge into an unread notification
+ * leaves the unread count as it is; one into a read notification makes it
+ * unread again.
+ *
+ * Notifications older than {@code notifications.retention.archive-after-days}
+ * are moved to {@code notificationsArchive}, where a TTL index drops them
+ * after {@code archive-ttl-days}.
+ */
+@Slf4j
+@Service
+public class NotificationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<String, UnreadCounter> unread = new ConcurrentHashMap<>();
+
+    @Value("${notifications.unread.ttl-ms:60000}")
+    private long unreadTtlMs;
+
+    @Value("${notifications.unread.max-users:100000}")
+    private int maxCachedUsers;
+
+    @Value("${notifications.coalesce.window-ms:3600000}")
+    private long coalesceWindowMs;
+
+    @Value("${notifications.coalesce.max-actors:5}")
+    private int maxActors;
+
+    @Value("${notifications.coalesce.types:like,comment,reply}")
+    private String[] coalescedTypes;
+
+    @Value("${notifications.retention.archive-after-days:90}")
+    private int archiveAfterDays;
+
+    @Value("${notifications.retention.archive-ttl-days:365}")
+    private int archiveTtlDays;
+
+    @Value("${notifications.retention.batch-size:1000}")
+    private int archiveBatchSize;
+
+    private static final String ARCHIVE_COLLECTION = "notificationsArchive";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private record UnreadCounter(AtomicLong count, long expiresAt) {
+    }
+
+    public NotificationService(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureArchiveIndex() {
+        try {
+            mongoTemplate.indexOps(ARCHIVE_COLLECTION).ensureIndex(new Index()
+                    .on("archivedAt", Sort.Direction.ASC)
+                    .expire(Duration.ofDays(archiveTtlDays))
+                    .named("archived_ttl_idx"));
+        } catch (UncategorizedMongoDbException e) {
+            // Typically the index exists with another expiry; change it with collMod
+            log.warn("Could not create the notification archive TTL index", e);
+        }
+    }
+
+    /**
+     * Stores the notification, or merges it into the open notification for
+     * the same user, type and source when its type is coalesced. Returns the
+     * stored notification.
+     */
+    public Notification create(Notification notification) {
+        Date now = new Date();
+        if (notification.getSourceId() == null || !Arrays.asList(coalescedTypes).contains(notification.getType())) {
+            notification.setTimestamp(now);
+            notification.setRead(false);
+            notification.setCount(1);
+            notification.setActionUserIds(notification.getActionUserId() == null
+                    ? List.of() : List.of(notification.getActionUserId()));
+            Notification saved = mongoTemplate.insert(notification);
+            adjustUnread(saved.getUserId(), 1);
+            eventPublisher.publishEvent(new NotificationCreatedEvent(saved));
+            return saved;
+        }
+
+        String key = String.join(":", notification.getUserId(), notification.getType(), notification.getSourceId(),
+                Long.toString(now.getTime() / coalesceWindowMs));
+        Update merge = new Update()
+                .setOnInsert("userId", notification.getUserId())
+                .setOnInsert("type", notification.getType())
+                .setOnInsert("sourceId", notification.getSourceId())
+                .setOnInsert("sourceType", notification.getSourceType())
+                .set("message", notification.getMessage())
+                .set("actionUserId", notification.getActionUserId())
+                .set("timestamp", now)
+                .set("read", false)
+                .inc("count", 1);
+        if (notification.getActionUserId() != null) {
+            merge.push("actionUserIds").slice(-maxActors).each(notification.getActionUserId());
+        }
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+
+        // Two upserts racing to open the same key: the loser hits the unique index and merges on the next pass
+        while (true) {
+            Notification merged = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("coalesceKey").is(key).and("read").is(false)),
+                    merge, returnNew, Notification.class);
+            if (merged == null) {
+                try {
+                    // Matches a read notification, or opens a new one; either way it becomes unread
+                    merged = mongoTemplate.findAndModify(
+                            Query.query(Criteria.where("coalesceKey").is(key).and("read").ne(false)),
+                            merge, FindAndModifyOptions.options().upsert(true).returnNew(true), Notification.class);
+                } catch (DuplicateKeyException e) {
+                    continue;
+                }
+                adjustUnread(notification.getUserId(), 1);
+            }
+            eventPublisher.publishEvent(new NotificationCreatedEvent(merged));
+            return merged;
+        }
+    }
+
+    /** The notification after marking it read, or null if it does not exist. */
+    public Notification markRead(String id) {
+        // Only the request that flips read from false to true moves the counter
+        Notification flipped = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(id).and("read").is(false)),
+                new Update().set("read", true),
+                FindAndModifyOptions.options().returnNew(true), Notification.class);
+        if (flipped == null) {
+            return mongoTemplate.findById(id, Notification.class);
+        }
+        adjustUnread(flipped.getUserId(), -1);
+        return flipped;
+    }
+
+    // One update for all of the user's unread notifications; returns how many were marked
+    public long markAllRead(String userId) {
+        long modified = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("userId").is(userId).and("read").is(false)),
+                new Update().set("read", true), Notification.class).getModifiedCount();
+        adjustUnread(userId, -modified);
+        return modified;
+    }
+
+    public boolean delete(String id) {
+        Notification removed = mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), Notification.class);
+        if (removed == null) {
+            return false;
+        }
+        if (!removed.isRead()) {
+            adjustUnread(removed.getUserId(), -1);
+        }
+        return true;
+    }
+
+    public long unreadCount(String userId) {
+        long now = System.currentTimeMillis();
+        UnreadCounter counter = unread.get(userId);
+        if (counter != null && counter.expiresAt() > now) {
+            return counter.count().get();
+        }
+
+        long count = mongoTemplate.count(
+                Query.query(Criteria.where("userId").is(userId).and("read").is(false)), Notification.class);
+        if (unread.size() >= maxCachedUsers) {
+            unread.clear();
+        }
+        unread.put(userId, new UnreadCounter(new AtomicLong(count), now + unreadTtlMs));
+        return count;
+    }
+
+    /**
+     * Moves notifications older than the retention period to the archive
+     * collection in batches. Each batch is copied before it is deleted, and a
+     * copy left by an interrupted run is skipped as a duplicate.
+     */
+    @Scheduled(initialDelayString = "${notifications.retention.initial-delay-ms:600000}",
+            fixedDelayString = "${notifications.retention.interval-ms:3600000}")
+    public void archiveOld() {
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveAfterDays));
+        String collection = mongoTemplate.getCollectionName(Notification.class);
+        Query batchQuery = Query.query(Criteria.where("timestamp").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .limit(archiveBatchSize);
+
+        long archived = 0;
+        List<Document> batch;
+        while (!(batch = mongoTemplate.find(batchQuery, Document.class, collection)).isEmpty()) {
+            Date archivedAt = new Date();
+            BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ARCHIVE_COLLECTION);
+            batch.forEach(document -> copy.insert(new Document(document).append("archivedAt", archivedAt)));
+            try {
+                copy.execute();
+            } catch (BulkOperationException e) {
+                if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                    throw e;
+                }
+            }
+
+            List<Object> ids = batch.stream().map(document -> document.get("_id")).toList();
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), collection);
+            batch.stream()
+                    .filter(document -> !document.getBoolean("read", false))
+                    .collect(Collectors.groupingBy(document -> document.getString("userId"), Collectors.counting()))
+                    .forEach((userId, unreadArchived) -> adjustUnread(userId, -unreadArchived));
+            archived += batch.size();
+        }
+        if (archived > 0) {
+            log.info("Archived {} notifications older than {} days", archived, archiveAfterDays);
+        }
+    }
+
+    // Users without a loaded counter are skipped; their next read counts from Mongo
+    private void adjustUnread(String userId, long delta) {
+        UnreadCounter counter = unread.get(userId);
+        if (counter != null && delta != 0) {
+            counter.count().updateAndGet(count -> Math.max(0, count + delta));
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Notification;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes new notifications to connected clients over Server-Sent Events, so
+ * they no longer poll for unread notifications.
+ *
+ * With {@code notifications.stream.mode: local} notifications come from the
+ * application event bus, which only sees those created on this node. With
+ * {@code change-stream} they come from a change stream on the notifications
+ * collection instead, so every node sees every insert; that needs a replica
+ * set, which a single-node one satisfies for development.
+ *
+ * An idle stream is an async request and holds no servlet thread. Events are
+ * written by a small sender pool from a bounded queue per stream; a client
+ * that lets its queue fill up is disconnected rather than buffered for, and
+ * reconnects to get a fresh unread count. Heartbeat comments keep proxies
+ * from closing idle streams and expose dead ones. Streams per node are capped
+ * at {@code notifications.stream.max-connections}.
+ */
+@Slf4j
+@Service
+public class NotificationStreamService {
+
+    public static final String MODE_LOCAL = "local";
+    public static final String MODE_CHANGE_STREAM = "change-stream";
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationService notificationService;
+    private final String mode;
+    private final long timeoutMs;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final int queueCapacity;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService sender;
+    private final ExecutorService watcher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("notification-watch-"));
+    private volatile boolean running = true;
+
+    public NotificationStreamService(MongoTemplate mongoTemplate, NotificationService notificationService,
+                                     @Value("${notifications.stream.mode:local}") String mode,
+                                     @Value("${notifications.stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${notifications.stream.max-connections:10000}") int maxConnections,
+                                     @Value("${notifications.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                     @Value("${notifications.stream.queue-capacity:64}") int queueCapacity,
+                                     @Value("${notifications.stream.send-threads:4}") int sendThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.notificationService = notificationService;
+        this.mode = mode;
+        this.timeoutMs = timeoutMs;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.queueCapacity = queueCapacity;
+        this.sender = Executors.newFixedThreadPool(sendThreads, new CustomizableThreadFactory("notification-sse-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWatching() {
+        if (MODE_CHANGE_STREAM.equals(mode)) {
+            watcher.execute(this::watch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        watcher.shutdownNow();
+        subscribers.values().forEach(streams -> streams.forEach(subscriber -> subscriber.emitter.complete()));
+        sender.shutdown();
+    }
+
+    /**
+     * Opens a stream for the user that starts with an {@code unread} event
+     * carrying the unread count, followed by a {@code notification} event per
+     * new notification. Returns null when this node or this user is at the
+     * connection cap.
+     */
+    public SseEmitter subscribe(String userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeoutMs));
+        // Atomic per user with the removal in Subscriber.close, so a stream never lands in a discarded set
+        boolean[] admitted = {false};
+        subscribers.compute(userId, (id, streams) -> {
+            Set<Subscriber> current = streams != null ? streams : ConcurrentHashMap.newKeySet();
+            if (current.size() < maxConnectionsPerUser) {
+                admitted[0] = current.add(subscriber);
+            }
+            return current.isEmpty() ? null : current;
+        });
+        if (!admitted[0]) {
+            connections.decrementAndGet();
+            return null;
+        }
+
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber.emitter::complete);
+        subscriber.emitter.onError(error -> subscriber.close());
+        subscriber.offer(SseEmitter.event().name("unread").data(Map.of("count", notificationService.unreadCount(userId))));
+        return subscriber.emitter;
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    @EventListener
+    public void onNotificationCreated(NotificationCreatedEvent event) {
+        if (MODE_LOCAL.equals(mode)) {
+            deliver(event.notification());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscribers.values().forEach(streams -> streams.forEach(subscriber -> {
+            // A stream with queued events will be written to anyway
+            if (subscriber.queue.isEmpty()) {
+                subscriber.offer(SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    private void deliver(Notification notification) {
+        Set<Subscriber> streams = subscribers.get(notification.getUserId());
+        if (streams != null) {
+            streams.forEach(subscriber -> subscriber.offer(
+                    SseEmitter.event().id(notification.getId()).name("notification").data(notification)));
+        }
+    }
+
+    // Follows new and merged notifications in the collection, resuming after errors from the last event seen
+    private void watch() {
+        BsonDocument resumeToken = null;
+        while (running) {
+            ChangeStreamIterable<Document> stream = mongoTemplate
+                    .getCollection(mongoTemplate.getCollectionName(Notification.class))
+                    .watch(List.of(Aggregates.match(Filters.or(
+                            Filters.eq("operationType", "insert"),
+                            // A coalesced notification taking another action; read-state changes are not pushed
+                            Filters.exists("updateDescription.updatedFields.count")))))
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    if (change.getFullDocument() != null) {
+                        deliver(mongoTemplate.getConverter().read(Notification.class, change.getFullDocument()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Notification change stream failed; reconnecting", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private final class Subscriber {
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // Too slow to keep up; it reconnects and starts again from a fresh unread count
+                emitter.complete();
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                close();
+            } finally {
+                draining.set(false);
+            }
+            // An event offered after the loop ended but before the flag was cleared
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                connections.decrementAndGet();
+                subscribers.computeIfPresent(userId, (id, streams) -> {
+                    streams.remove(this);
+                    return streams.isEmpty() ? null : streams;
+                });
+                queue.clear();
+            }
+        }
+    }
+}
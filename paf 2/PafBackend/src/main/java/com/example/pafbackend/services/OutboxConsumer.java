@@ -0,0 +1,17 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.OutboxEvent;
+
+/**
+ * Receives outbox events off the request path. Delivery is at least once: an
+ * event is retried until every consumer has handled it, but a consumer that
+ * succeeded is not called again unless the node dies before recording that.
+ */
+public interface OutboxConsumer {
+
+    // Stable name, recorded on the event once this consumer has handled it
+    String name();
+
+    // Throwing schedules a retry of this event; later events of the same aggregate wait for it
+    void handle(OutboxEvent event);
+}
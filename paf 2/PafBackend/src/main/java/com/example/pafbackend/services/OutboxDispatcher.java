@@ -0,0 +1,294 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.OutboxEvent;
+import com.example.pafbackend.repositories.KeysetCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers pending outbox events to every {@link OutboxConsumer}.
+ *
+ * One node at a time dispatches, holding a lease document in
+ * {@code outboxLeases} that it renews on every poll. It reads pending events
+ * oldest first in batches of {@code outbox.batch-size}, groups them by
+ * aggregate and runs the groups in parallel on {@code outbox.threads}
+ * workers, each group strictly in order: an event that fails, or waits for
+ * its retry, holds back the later events of its aggregate. Events of such
+ * blocked aggregates are skipped when reading a batch, so they never crowd
+ * out the aggregates that can make progress. Retries back off
+ * exponentially; after {@code outbox.max-attempts} the event is marked
+ * FAILED and no longer blocks. Delivered events expire after
+ * {@code outbox.retention-hours}.
+ */
+@Slf4j
+@Service
+public class OutboxDispatcher {
+
+    private static final String LEASE_COLLECTION = "outboxLeases";
+    private static final String LEASE_ID = "dispatcher";
+
+    private final MongoTemplate mongoTemplate;
+    private final List<OutboxConsumer> consumers;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ExecutorService poller = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("outbox-poll-"));
+    private final ExecutorService workers;
+    private final AtomicBoolean pollQueued = new AtomicBoolean();
+
+    private final Counter delivered;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Timer deliveryLag;
+    private final AtomicLong backlog = new AtomicLong();
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-base-ms:1000}")
+    private long retryBaseMs;
+
+    @Value("${outbox.retry-max-ms:300000}")
+    private long retryMaxMs;
+
+    @Value("${outbox.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+
+    public OutboxDispatcher(MongoTemplate mongoTemplate, List<OutboxConsumer> consumers, MeterRegistry meterRegistry,
+                            @Value("${outbox.threads:4}") int threads) {
+        this.mongoTemplate = mongoTemplate;
+        this.consumers = consumers;
+        this.workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("outbox-worker-"));
+        this.delivered = meterRegistry.counter("outbox.events.delivered");
+        this.retried = meterRegistry.counter("outbox.events.retried");
+        this.deadLettered = meterRegistry.counter("outbox.events.failed");
+        this.deliveryLag = meterRegistry.timer("outbox.delivery.lag");
+        Gauge.builder("outbox.backlog", backlog, AtomicLong::get).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureRetentionIndex() {
+        try {
+            mongoTemplate.indexOps(OutboxEvent.class).ensureIndex(new Index()
+                    .on("processedAt", Sort.Direction.ASC)
+                    .expire(Duration.ofHours(retentionHours))
+                    .named("processed_ttl_idx"));
+        } catch (UncategorizedMongoDbException e) {
+            log.warn("Could not create the outbox retention TTL index", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        poller.shutdown();
+        poller.awaitTermination(10, TimeUnit.SECONDS);
+        workers.shutdown();
+        // Let another node take over without waiting for the lease to run out
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(LEASE_ID).and("owner").is(nodeId)),
+                new Update().set("until", new Date(0)), LEASE_COLLECTION);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void scheduledPoll() {
+        wake();
+    }
+
+    // Called after writes commit so fresh events go out without waiting for the next poll
+    public void wake() {
+        if (pollQueued.compareAndSet(false, true)) {
+            try {
+                poller.execute(this::poll);
+            } catch (RejectedExecutionException e) {
+                pollQueued.set(false);
+            }
+        }
+    }
+
+    private void poll() {
+        pollQueued.set(false);
+        try {
+            // Keep going while batches come back full and move, renewing the lease before each one
+            while (holdLease() && dispatchBatch()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Outbox dispatch failed", e);
+        }
+    }
+
+    private boolean holdLease() {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("_id").is(LEASE_ID)
+                .orOperator(Criteria.where("owner").is(nodeId), Criteria.where("until").lt(now)));
+        try {
+            return mongoTemplate.findAndModify(query,
+                    new Update().set("owner", nodeId).set("until", new Date(now.getTime() + leaseMs)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    Document.class, LEASE_COLLECTION) != null;
+        } catch (DuplicateKeyException e) {
+            // Held by another node: the upsert tried to create the lease document again
+            return false;
+        }
+    }
+
+    // True when another batch may be waiting behind this one
+    private boolean dispatchBatch() {
+        Date now = new Date();
+        Set<String> blocked = blockedAggregates(now);
+        List<OutboxEvent> batch = dueEvents(now, blocked);
+        backlog.set(mongoTemplate.count(Query.query(Criteria.where("status").is(OutboxEvent.PENDING)), OutboxEvent.class));
+
+        Map<String, List<OutboxEvent>> byAggregate = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            byAggregate.computeIfAbsent(aggregateKey(event), key -> new ArrayList<>()).add(event);
+        }
+        AtomicInteger finished = new AtomicInteger();
+        CompletableFuture.allOf(byAggregate.values().stream()
+                .map(events -> CompletableFuture.runAsync(() -> deliverInOrder(events, finished), workers))
+                .toArray(CompletableFuture[]::new)).join();
+        // A full batch where nothing finished is all failing again; the next poll tries again
+        return batch.size() >= batchSize && finished.get() > 0;
+    }
+
+    // Aggregates whose oldest pending event is waiting for a retry; their later events must wait behind it
+    private Set<String> blockedAggregates(Date now) {
+        Query query = Query.query(Criteria.where("status").is(OutboxEvent.PENDING).and("nextAttemptAt").gt(now));
+        query.fields().include("aggregateType", "aggregateId");
+        Set<String> blocked = new HashSet<>();
+        mongoTemplate.find(query, OutboxEvent.class).forEach(event -> blocked.add(aggregateKey(event)));
+        return blocked;
+    }
+
+    // Up to batchSize due events, oldest first, paging past those of blocked aggregates
+    // so a backlog of retries at the head cannot hold up everyone else
+    private List<OutboxEvent> dueEvents(Date now, Set<String> blocked) {
+        Criteria due = Criteria.where("status").is(OutboxEvent.PENDING)
+                .orOperator(Criteria.where("nextAttemptAt").is(null), Criteria.where("nextAttemptAt").lte(now));
+        List<OutboxEvent> events = new ArrayList<>(batchSize);
+        KeysetCursor position = null;
+        while (events.size() < batchSize) {
+            Query query = new Query(KeysetCursor.and(due, position == null ? null : position.after("createdAt", "id")))
+                    .with(Sort.by(Sort.Direction.ASC, "createdAt", "id"))
+                    .limit(batchSize);
+            List<OutboxEvent> page = mongoTemplate.find(query, OutboxEvent.class);
+            for (OutboxEvent event : page) {
+                if (events.size() < batchSize && !blocked.contains(aggregateKey(event))) {
+                    events.add(event);
+                }
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+            OutboxEvent last = page.get(page.size() - 1);
+            position = KeysetCursor.of(last.getCreatedAt(), last.getId());
+        }
+        return events;
+    }
+
+    private static String aggregateKey(OutboxEvent event) {
+        return event.getAggregateType() + ":" + event.getAggregateId();
+    }
+
+    private void deliverInOrder(List<OutboxEvent> events, AtomicInteger finished) {
+        Date now = new Date();
+        for (OutboxEvent event : events) {
+            if (event.getNextAttemptAt() != null && event.getNextAttemptAt().after(now)) {
+                return;
+            }
+            if (!deliver(event)) {
+                return;
+            }
+            finished.incrementAndGet();
+        }
+    }
+
+    // True when the event is finished with, delivered or given up on
+    private boolean deliver(OutboxEvent event) {
+        Query byId = Query.query(Criteria.where("id").is(event.getId()));
+        for (OutboxConsumer consumer : consumers) {
+            if (event.getCompletedConsumers().contains(consumer.name())) {
+                continue;
+            }
+            try {
+                consumer.handle(event);
+            } catch (RuntimeException e) {
+                return failed(event, consumer, e);
+            }
+            mongoTemplate.updateFirst(byId, new Update().addToSet("completedConsumers", consumer.name()),
+                    OutboxEvent.class);
+            event.getCompletedConsumers().add(consumer.name());
+        }
+
+        Date now = new Date();
+        mongoTemplate.updateFirst(byId, new Update().set("status", OutboxEvent.DONE).set("processedAt", now),
+                OutboxEvent.class);
+        delivered.increment();
+        deliveryLag.record(now.getTime() - event.getCreatedAt().getTime(), TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private boolean failed(OutboxEvent event, OutboxConsumer consumer, RuntimeException error) {
+        int attempts = event.getAttempts() + 1;
+        Update update = new Update().set("attempts", attempts)
+                .set("lastError", consumer.name() + ": " + error.getMessage());
+        if (attempts >= maxAttempts) {
+            log.error("Giving up on outbox event {} ({}) after {} attempts", event.getId(), event.getType(), attempts, error);
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(event.getId())),
+                    update.set("status", OutboxEvent.FAILED), OutboxEvent.class);
+            deadLettered.increment();
+            return true;
+        }
+
+        long backoff = Math.min(retryMaxMs, retryBaseMs << Math.min(attempts - 1, 20));
+        log.warn("Outbox event {} ({}) failed in {}; retrying in {} ms",
+                event.getId(), event.getType(), consumer.name(), backoff, error);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(event.getId())),
+                update.set("nextAttemptAt", new Date(System.currentTimeMillis() + backoff)), OutboxEvent.class);
+        retried.increment();
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.OutboxEvent;
+import com.mongodb.MongoException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Writes that emit domain events run through {@link #inTransaction}, and
+ * record their events with {@link #record} inside it, so an event is stored
+ * if and only if its write is. The dispatcher is woken after the commit.
+ *
+ * A standalone Mongo has no transactions; with
+ * {@code outbox.transactions.enabled: false} the work runs without one, and
+ * a crash between a write and its event can lose the event.
+ */
+@Service
+public class OutboxService {
+
+    private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxDispatcher dispatcher;
+    private final boolean transactional;
+
+    public OutboxService(MongoTemplate mongoTemplate, TransactionTemplate transactionTemplate,
+                         OutboxDispatcher dispatcher,
+                         @Value("${outbox.transactions.enabled:true}") boolean transactional) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dispatcher = dispatcher;
+        this.transactional = transactional;
+    }
+
+    public <T> T inTransaction(Supplier<T> work) {
+        T result;
+        if (!transactional) {
+            result = work.get();
+        } else {
+            result = withRetry(work);
+        }
+        dispatcher.wake();
+        return result;
+    }
+
+    public void record(OutboxEvent event) {
+        mongoTemplate.insert(event);
+    }
+
+    // One insert for a whole batch of events; delivery starts right away
+    public void recordAll(Collection<OutboxEvent> events) {
+        if (!events.isEmpty()) {
+            mongoTemplate.insert(events, OutboxEvent.class);
+            dispatcher.wake();
+        }
+    }
+
+    // Write conflicts between concurrent transactions are labelled transient and are safe to run again
+    private <T> T withRetry(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (DataAccessException e) {
+                if (attempt >= MAX_TRANSACTION_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(DataAccessException e) {
+        return e.getCause() instanceof MongoException cause
+                && cause.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+    }
+}
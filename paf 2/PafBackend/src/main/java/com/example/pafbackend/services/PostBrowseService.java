@@ -0,0 +1,217 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Post;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Filters and facet counts for browsing posts by cuisine, difficulty and
+ * cooking time.
+ *
+ * Facet counts take a {@code $facet} aggregation over every matching post, so
+ * they are cached per filter. Any post write clears the cache through
+ * {@link #invalidateFacets()}; the TTL only bounds staleness from writes that
+ * bypass the post endpoints.
+ */
+@Slf4j
+@Service
+public class PostBrowseService {
+
+    private static final int[] MINUTE_BOUNDARIES = {0, 16, 31, 61};
+    private static final String[] MINUTE_LABELS = {"0-15", "16-30", "31-60", "61+"};
+    private static final String UNKNOWN = "unknown";
+
+    private final MongoTemplate mongoTemplate;
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("post-backfill-"));
+    private final Map<String, CachedFacets> facetCache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${posts.browse.facet-cache-ttl-ms:300000}")
+    private long facetCacheTtlMs;
+
+    @Value("${posts.browse.facet-cache-max-entries:1000}")
+    private int facetCacheMaxEntries;
+
+    @Value("${posts.browse.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    private record CachedFacets(Map<String, Map<String, Long>> facets, long expiresAt) {
+    }
+
+    public PostBrowseService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfiller.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                log.error("Backfilling cookingMinutes/difficulty failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfiller.shutdownNow();
+    }
+
+    /** Sets the parsed fields on a post about to be saved. */
+    public static void applyParsedAttributes(Post post) {
+        post.setCookingMinutes(RecipeAttributes.parseMinutes(post.getCookingTime()));
+        post.setDifficulty(RecipeAttributes.normalizeDifficulty(post.getDifficultyLevel()));
+    }
+
+    // Any argument may be null; difficulty must already be normalized
+    public Criteria filter(String cuisineType, String difficulty, Integer minMinutes, Integer maxMinutes) {
+        Criteria criteria = new Criteria();
+        if (cuisineType != null) {
+            criteria.and("cuisineType").is(cuisineType);
+        }
+        if (difficulty != null) {
+            criteria.and("difficulty").is(difficulty);
+        }
+        if (minMinutes != null || maxMinutes != null) {
+            Criteria minutes = criteria.and("cookingMinutes");
+            if (minMinutes != null) {
+                minutes.gte(minMinutes);
+            }
+            if (maxMinutes != null) {
+                minutes.lte(maxMinutes);
+            }
+        }
+        return criteria;
+    }
+
+    /**
+     * Counts of the posts matching the filter, grouped by cuisine, by
+     * difficulty and by cooking-time band.
+     */
+    public Map<String, Map<String, Long>> facets(String cuisineType, String difficulty,
+                                                 Integer minMinutes, Integer maxMinutes) {
+        String key = cuisineType + "|" + difficulty + "|" + minMinutes + "|" + maxMinutes;
+        long now = System.currentTimeMillis();
+        CachedFacets cached = facetCache.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.facets();
+        }
+
+        long seen = generation.get();
+        Map<String, Map<String, Long>> facets = countFacets(filter(cuisineType, difficulty, minMinutes, maxMinutes));
+        if (facetCache.size() >= facetCacheMaxEntries) {
+            facetCache.clear();
+        }
+        facetCache.put(key, new CachedFacets(facets, now + facetCacheTtlMs));
+        if (generation.get() != seen) {
+            // A write landed while we were counting; the result may already be stale
+            facetCache.remove(key);
+        }
+        return facets;
+    }
+
+    public void invalidateFacets() {
+        generation.incrementAndGet();
+        facetCache.clear();
+    }
+
+    private Map<String, Map<String, Long>> countFacets(Criteria filter) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(filter));
+        stages.add(Aggregation.facet(Aggregation.group("cuisineType").count().as("count")).as("cuisineType")
+                .and(Aggregation.group("difficulty").count().as("count")).as("difficulty")
+                .and(Aggregation.bucket("cookingMinutes")
+                        .withBoundaries(MINUTE_BOUNDARIES[0], MINUTE_BOUNDARIES[1], MINUTE_BOUNDARIES[2],
+                                MINUTE_BOUNDARIES[3], Integer.MAX_VALUE)
+                        .withDefaultBucket(UNKNOWN)).as("cookingMinutes"));
+        Document result = mongoTemplate.aggregate(Aggregation.newAggregation(stages), Post.class, Document.class)
+                .getUniqueMappedResult();
+
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        for (String facet : List.of("cuisineType", "difficulty", "cookingMinutes")) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            if (result != null) {
+                for (Document bucket : result.getList(facet, Document.class, List.of())) {
+                    counts.put(label(facet, bucket.get("_id")), ((Number) bucket.get("count")).longValue());
+                }
+            }
+            facets.put(facet, counts);
+        }
+        return facets;
+    }
+
+    private static String label(String facet, Object id) {
+        if (id == null) {
+            return UNKNOWN;
+        }
+        if (facet.equals("cookingMinutes") && id instanceof Number lowerBound) {
+            for (int i = 0; i < MINUTE_BOUNDARIES.length; i++) {
+                if (MINUTE_BOUNDARIES[i] == lowerBound.intValue()) {
+                    return MINUTE_LABELS[i];
+                }
+            }
+        }
+        return id.toString();
+    }
+
+    // Posts written before the parsed fields existed. Post writes cookingMinutes even when it is null, and so does
+    // this backfill, so a post whose cookingTime does not parse is visited once rather than on every startup
+    void backfill() {
+        Query query = Query.query(Criteria.where("cookingMinutes").exists(false));
+        query.fields().include("cookingTime", "difficultyLevel");
+
+        int[] updated = {0};
+        List<Post> batch = new ArrayList<>(backfillBatchSize);
+        try (Stream<Post> posts = mongoTemplate.stream(query, Post.class)) {
+            posts.forEach(post -> {
+                batch.add(post);
+                if (batch.size() >= backfillBatchSize) {
+                    updated[0] += backfillBatch(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            updated[0] += backfillBatch(batch);
+        }
+        if (updated[0] > 0) {
+            invalidateFacets();
+            log.info("Backfilled cookingMinutes/difficulty on {} posts", updated[0]);
+        }
+    }
+
+    private int backfillBatch(List<Post> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        for (Post post : batch) {
+            bulk.updateOne(Query.query(Criteria.where("id").is(post.getId())),
+                    new Update()
+                            .set("cookingMinutes", RecipeAttributes.parseMinutes(post.getCookingTime()))
+                            .set("difficulty", RecipeAttributes.normalizeDifficulty(post.getDifficultyLevel())));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+}
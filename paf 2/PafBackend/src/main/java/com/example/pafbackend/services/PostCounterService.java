@@ -0,0 +1,131 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.Post;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Keeps {@code Post.likeCount} and {@code Post.commentCount} in step with the
+ * likes and comments collections. Writers adjust the counters with atomic
+ * {@code $inc}; a periodic reconciliation recounts posts in batches and repairs
+ * any drift left by failed or interleaved writes.
+ */
+@Slf4j
+@Service
+public class PostCounterService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${posts.counters.reconcile-batch-size:500}")
+    private int batchSize;
+
+    public PostCounterService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public void adjustLikeCount(String postId, long delta) {
+        increment(postId, "likeCount", delta);
+    }
+
+    public void adjustCommentCount(String postId, long delta) {
+        increment(postId, "commentCount", delta);
+    }
+
+    private void increment(String postId, String field, long delta) {
+        if (postId == null || delta == 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(postId)), new Update().inc(field, delta), Post.class);
+    }
+
+    @Scheduled(initialDelayString = "${posts.counters.reconcile-initial-delay-ms:300000}",
+               fixedDelayString = "${posts.counters.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        Query postsQuery = new Query().with(Sort.by("id"));
+        postsQuery.fields().include("likeCount", "commentCount");
+
+        int[] repaired = {0};
+        List<Post> batch = new ArrayList<>(batchSize);
+        try (Stream<Post> posts = mongoTemplate.stream(postsQuery, Post.class)) {
+            posts.forEach(post -> {
+                batch.add(post);
+                if (batch.size() >= batchSize) {
+                    repaired[0] += reconcileBatch(batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            repaired[0] += reconcileBatch(batch);
+        }
+        if (repaired[0] > 0) {
+            log.info("Repaired like/comment counters on {} posts", repaired[0]);
+        }
+    }
+
+    // Sets likeCount from the likes collection, for batched like writes whose per-like outcome is unknown
+    public void recountLikes(Collection<String> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        Map<String, Long> likes = countByPost(new ArrayList<>(postIds), Like.class);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        for (String postId : postIds) {
+            bulk.updateOne(Query.query(Criteria.where("id").is(postId)),
+                    new Update().set("likeCount", likes.getOrDefault(postId, 0L)));
+        }
+        bulk.execute();
+    }
+
+    private int reconcileBatch(List<Post> posts) {
+        List<String> ids = posts.stream().map(Post::getId).toList();
+        Map<String, Long> likes = countByPost(ids, Like.class);
+        Map<String, Long> comments = countByPost(ids, Comment.class);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        int repaired = 0;
+        for (Post post : posts) {
+            long likeCount = likes.getOrDefault(post.getId(), 0L);
+            long commentCount = comments.getOrDefault(post.getId(), 0L);
+            if (post.getLikeCount() != likeCount || post.getCommentCount() != commentCount) {
+                bulk.updateOne(Query.query(Criteria.where("id").is(post.getId())),
+                        new Update().set("likeCount", likeCount).set("commentCount", commentCount));
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            bulk.execute();
+        }
+        return repaired;
+    }
+
+    private Map<String, Long> countByPost(List<String> postIds, Class<?> collection) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("postId").in(postIds)),
+                Aggregation.group("postId").count().as("count"));
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, collection, Document.class)) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.pafbackend.services;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes the free-form {@code cookingTime} and {@code difficultyLevel}
+ * strings of a post into values that can be indexed and range-filtered.
+ */
+public final class RecipeAttributes {
+
+    public static final String EASY = "easy";
+    public static final String MEDIUM = "medium";
+    public static final String HARD = "hard";
+
+    // A number or range ("30", "1.5", "20-25", "20 to 25") and an optional unit
+    private static final Pattern AMOUNT = Pattern.compile(
+            "(\\d+(?:[.,]\\d+)?)(?:\\s*(?:-|\\u2013|to)\\s*(\\d+(?:[.,]\\d+)?))?\\s*(hours?|hrs?|h|minutes?|mins?|m)?(?![a-z])");
+    private static final Pattern ISO_DURATION = Pattern.compile("pt(?:(\\d+)h)?(?:(\\d+)m)?");
+    private static final int MAX_MINUTES = 7 * 24 * 60;
+
+    private RecipeAttributes() {
+    }
+
+    /**
+     * Minutes for strings like "45", "30 mins", "1 hour 15 minutes", "1h30",
+     * "1.5 hours", "half an hour" or "PT40M". A range counts as its upper
+     * bound, so "20-30 min" is not offered as a 20-minute recipe. Returns null
+     * when nothing parses.
+     */
+    public static Integer parseMinutes(String cookingTime) {
+        if (cookingTime == null || cookingTime.isBlank()) {
+            return null;
+        }
+        String text = cookingTime.trim().toLowerCase(Locale.ROOT);
+
+        Matcher iso = ISO_DURATION.matcher(text);
+        if (iso.matches() && (iso.group(1) != null || iso.group(2) != null)) {
+            int hours = iso.group(1) == null ? 0 : Integer.parseInt(iso.group(1));
+            int minutes = iso.group(2) == null ? 0 : Integer.parseInt(iso.group(2));
+            return clamp(hours * 60.0 + minutes);
+        }
+
+        text = text.replace("half an hour", "30 min").replace("an hour", "1 hour");
+        double total = 0;
+        boolean found = false;
+        Matcher amount = AMOUNT.matcher(text);
+        while (amount.find()) {
+            double value = number(amount.group(2) != null ? amount.group(2) : amount.group(1));
+            String unit = amount.group(3);
+            if (unit != null && unit.startsWith("h")) {
+                total += value * 60;
+            } else {
+                // Bare numbers are minutes, including the "30" in "1h30"
+                total += value;
+            }
+            found = true;
+        }
+        return found ? clamp(total) : null;
+    }
+
+    /** "easy", "medium" or "hard", or null when the level is not recognised. */
+    public static String normalizeDifficulty(String difficultyLevel) {
+        if (difficultyLevel == null) {
+            return null;
+        }
+        String text = difficultyLevel.trim().toLowerCase(Locale.ROOT);
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (text.contains("easy") || text.contains("beginner") || text.contains("simple") || text.equals("low")) {
+            return EASY;
+        }
+        if (text.contains("medium") || text.contains("intermediate") || text.contains("moderate")
+                || text.contains("average") || text.equals("normal")) {
+            return MEDIUM;
+        }
+        if (text.contains("hard") || text.contains("difficult") || text.contains("advanced")
+                || text.contains("expert") || text.contains("challenging") || text.equals("high")) {
+            return HARD;
+        }
+        return null;
+    }
+
+    private static double number(String value) {
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    private static Integer clamp(double minutes) {
+        if (minutes <= 0) {
+            return null;
+        }
+        return (int) Math.min(MAX_MINUTES, Math.round(minutes));
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.RecipeMatch;
+import com.example.pafbackend.models.MealPlan;
+import com.example.pafbackend.models.Post;
+import com.example.pafbackend.models.SkillShare;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * "What can I cook" matching of a pantry against the ingredients of posts,
+ * skill shares and meal plans.
+ *
+ * The index is built from Mongo in parallel once the application is ready
+ * and kept current by the create, update and delete endpoints of all three
+ * collections. Until the first build finishes, matches come back empty.
+ */
+@Slf4j
+@Service
+public class RecipeMatchService {
+
+    public static final String SOURCE_POST = "post";
+    public static final String SOURCE_SKILL_SHARE = "skillShare";
+    public static final String SOURCE_MEAL_PLAN = "mealPlan";
+
+    private static final Pattern LINE_SEPARATORS = Pattern.compile("[,;\\n]");
+    // Quantities, units and preparation words that say nothing about what the ingredient is
+    private static final Set<String> NOISE_TERMS = Stream.of(
+            "cup", "cups", "tablespoon", "tablespoons", "tbsp", "teaspoon", "teaspoons", "tsp",
+            "gram", "grams", "kg", "ml", "litre", "liter", "oz", "ounce", "ounces", "lb", "lbs", "pound", "pounds",
+            "pinch", "dash", "handful", "clove", "cloves", "slice", "slices", "piece", "pieces", "can", "tin",
+            "chopped", "minced", "diced", "sliced", "grated", "peeled", "crushed", "finely", "roughly",
+            "fresh", "large", "medium", "small", "whole", "optional", "taste")
+            .map(TextAnalyzer::stem)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private final MongoTemplate mongoTemplate;
+    private final int parallelism;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("recipe-match-"));
+
+    private final Object swapLock = new Object();
+    private volatile IngredientIndex index = new IngredientIndex();
+    // Writes made while a build is streaming recipes; replayed onto the new index before it goes live
+    private List<Consumer<IngredientIndex>> pendingDuringBuild;
+
+    public RecipeMatchService(MongoTemplate mongoTemplate,
+                              @Value("${recipes.match.build-parallelism:0}") int parallelism) {
+        this.mongoTemplate = mongoTemplate;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        loader.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Building the ingredient match index failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    public void index(Post post) {
+        put(SOURCE_POST, post.getId(), post.getTitle(), normalize(post.getIngredients()));
+    }
+
+    public void index(SkillShare skillShare) {
+        put(SOURCE_SKILL_SHARE, skillShare.getId(), skillShare.getMealDetails(),
+                normalize(skillShare.getIngredients() == null ? null : List.of(skillShare.getIngredients())));
+    }
+
+    public void index(MealPlan mealPlan) {
+        put(SOURCE_MEAL_PLAN, mealPlan.getId(), mealPlan.getName(),
+                normalize(mealPlan.getIngredients() == null ? null : Arrays.asList(mealPlan.getIngredients())));
+    }
+
+    public void remove(String source, String id) {
+        String key = key(source, id);
+        apply(target -> target.remove(key));
+    }
+
+    public List<RecipeMatch> match(Collection<String> pantry, int limit, int maxMissing) {
+        List<IngredientIndex.Match> matches = index.match(normalize(pantry), limit, maxMissing);
+        List<RecipeMatch> result = new ArrayList<>(matches.size());
+        for (IngredientIndex.Match match : matches) {
+            int separator = match.getKey().indexOf(':');
+            RecipeMatch recipe = new RecipeMatch();
+            recipe.setSource(match.getKey().substring(0, separator));
+            recipe.setId(match.getKey().substring(separator + 1));
+            recipe.setTitle(match.getTitle());
+            recipe.setCoverage(match.getCoverage());
+            recipe.setMatchedIngredients(match.getMatched());
+            recipe.setMissingIngredients(match.getMissing());
+            result.add(recipe);
+        }
+        return result;
+    }
+
+    private void put(String source, String id, String title, List<String> ingredients) {
+        String key = key(source, id);
+        apply(target -> target.put(key, title, ingredients));
+    }
+
+    private void apply(Consumer<IngredientIndex> change) {
+        synchronized (swapLock) {
+            change.accept(index);
+            if (pendingDuringBuild != null) {
+                pendingDuringBuild.add(change);
+            }
+        }
+    }
+
+    void rebuild() {
+        synchronized (swapLock) {
+            pendingDuringBuild = new ArrayList<>();
+        }
+        boolean complete = false;
+        IngredientIndex fresh = null;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<RawRecipe> recipes = new ArrayList<>();
+            Query posts = new Query();
+            posts.fields().include("title", "ingredients");
+            try (Stream<Post> stream = mongoTemplate.stream(posts, Post.class)) {
+                stream.forEach(post -> recipes.add(recipe(SOURCE_POST, post.getId(), post.getTitle(),
+                        post.getIngredients())));
+            }
+            Query skillShares = new Query();
+            skillShares.fields().include("mealDetails", "ingredients");
+            try (Stream<SkillShare> stream = mongoTemplate.stream(skillShares, SkillShare.class)) {
+                stream.forEach(skillShare -> recipes.add(recipe(SOURCE_SKILL_SHARE, skillShare.getId(),
+                        skillShare.getMealDetails(),
+                        skillShare.getIngredients() == null ? null : List.of(skillShare.getIngredients()))));
+            }
+            Query mealPlans = new Query();
+            mealPlans.fields().include("name", "ingredients");
+            try (Stream<MealPlan> stream = mongoTemplate.stream(mealPlans, MealPlan.class)) {
+                stream.forEach(mealPlan -> recipes.add(recipe(SOURCE_MEAL_PLAN, mealPlan.getId(), mealPlan.getName(),
+                        mealPlan.getIngredients() == null ? null : Arrays.asList(mealPlan.getIngredients()))));
+            }
+
+            // Raw lines are normalized on the pool too; it is the most expensive part of the build
+            List<IngredientIndex.Recipe> normalized = pool.submit(() -> recipes.parallelStream()
+                    .map(recipe -> new IngredientIndex.Recipe(recipe.key(), recipe.title(), normalize(recipe.lines())))
+                    .toList()).join();
+            fresh = IngredientIndex.build(normalized, pool);
+            complete = true;
+        } finally {
+            pool.shutdown();
+            synchronized (swapLock) {
+                if (complete) {
+                    for (Consumer<IngredientIndex> change : pendingDuringBuild) {
+                        change.accept(fresh);
+                    }
+                    index = fresh;
+                }
+                pendingDuringBuild = null;
+            }
+        }
+        log.info("Ingredient match index built with {} recipes", fresh.size());
+    }
+
+    private record RawRecipe(String key, String title, Collection<String> lines) {
+    }
+
+    private static RawRecipe recipe(String source, String id, String title, Collection<String> lines) {
+        return new RawRecipe(key(source, id), title, lines);
+    }
+
+    private static String key(String source, String id) {
+        return source + ":" + id;
+    }
+
+    /**
+     * Reduces free-form ingredient lines to comparable names: "2 cloves garlic,
+     * minced" and "Garlic" both become the stemmed term "garlic". Lines are
+     * split on commas, semicolons and newlines first, since skill shares keep
+     * their ingredients in a single string.
+     */
+    static List<String> normalize(Collection<String> lines) {
+        if (lines == null) {
+            return List.of();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String line : lines) {
+            if (line == null) {
+                continue;
+            }
+            for (String part : LINE_SEPARATORS.split(line)) {
+                String name = TextAnalyzer.analyze(part).stream()
+                        .filter(term -> !Character.isDigit(term.charAt(0)) && !NOISE_TERMS.contains(term))
+                        .collect(Collectors.joining(" "));
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Post;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Full-text recipe search over post title, description and ingredients.
+ *
+ * The index lives in memory and is kept current by {@link #index(Post)} and
+ * {@link #remove(String)} from the post endpoints. It is snapshotted to
+ * {@code search.snapshot-path} periodically and on shutdown. On startup the
+ * snapshot is loaded so search works straight away, then a full rebuild from
+ * Mongo replaces it in the background to pick up writes the snapshot missed.
+ */
+@Slf4j
+@Service
+public class RecipeSearchIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int INGREDIENT_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final MongoTemplate mongoTemplate;
+    private final Path snapshotPath;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("search-index-"));
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final Object swapLock = new Object();
+    private volatile InvertedIndex index = new InvertedIndex();
+    // Writes made while a rebuild is streaming posts; replayed onto the new index before it goes live
+    private List<Consumer<InvertedIndex>> pendingDuringRebuild;
+
+    public RecipeSearchIndex(MongoTemplate mongoTemplate,
+                             @Value("${search.snapshot-path:data/search/recipes.idx}") String snapshotPath) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshotPath = Paths.get(snapshotPath);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        loader.execute(() -> {
+            loadSnapshot();
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Rebuilding the recipe search index failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+        saveSnapshot();
+    }
+
+    public void index(Post post) {
+        Map<String, Integer> terms = termFrequencies(post);
+        apply(target -> target.put(post.getId(), terms));
+    }
+
+    public void remove(String postId) {
+        apply(target -> target.remove(postId));
+    }
+
+    private void apply(Consumer<InvertedIndex> change) {
+        synchronized (swapLock) {
+            change.accept(index);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(change);
+            }
+        }
+        dirty.set(true);
+    }
+
+    public List<Post> search(String text, int limit) {
+        List<InvertedIndex.Hit> hits = index.search(TextAnalyzer.analyze(text), limit);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        List<String> ids = hits.stream().map(InvertedIndex.Hit::getKey).toList();
+        Map<String, Post> postsById = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("id").in(ids)), Post.class)
+                .forEach(post -> postsById.put(post.getId(), post));
+
+        List<Post> ranked = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Post post = postsById.get(id);
+            if (post != null) {
+                ranked.add(post);
+            }
+        }
+        return ranked;
+    }
+
+    void rebuild() {
+        synchronized (swapLock) {
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        InvertedIndex fresh = new InvertedIndex();
+        boolean complete = false;
+        try {
+            Query query = new Query();
+            query.fields().include("title", "contentDescription", "ingredients");
+            try (Stream<Post> posts = mongoTemplate.stream(query, Post.class)) {
+                posts.forEach(post -> fresh.put(post.getId(), termFrequencies(post)));
+            }
+            complete = true;
+        } finally {
+            synchronized (swapLock) {
+                if (complete) {
+                    pendingDuringRebuild.forEach(change -> change.accept(fresh));
+                    index = fresh;
+                }
+                pendingDuringRebuild = null;
+            }
+        }
+        dirty.set(true);
+        log.info("Recipe search index rebuilt with {} posts", fresh.size());
+    }
+
+    private void loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            InvertedIndex loaded = InvertedIndex.readFrom(in);
+            synchronized (swapLock) {
+                index = loaded;
+            }
+            log.info("Loaded recipe search snapshot with {} posts", loaded.size());
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable recipe search snapshot {}", snapshotPath, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${search.snapshot-interval-ms:600000}",
+               fixedDelayString = "${search.snapshot-interval-ms:600000}")
+    public void saveSnapshot() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "recipes", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                index.writeTo(out);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Writing recipe search snapshot failed", e);
+        }
+    }
+
+    private static Map<String, Integer> termFrequencies(Post post) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addTerms(frequencies, post.getTitle(), TITLE_WEIGHT);
+        addTerms(frequencies, post.getContentDescription(), DESCRIPTION_WEIGHT);
+        if (post.getIngredients() != null) {
+            for (String ingredient : post.getIngredients()) {
+                addTerms(frequencies, ingredient, INGREDIENT_WEIGHT);
+            }
+        }
+        return frequencies;
+    }
+
+    // Field weights are folded into the term frequency so a title hit outranks a description hit
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : TextAnalyzer.analyze(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+}
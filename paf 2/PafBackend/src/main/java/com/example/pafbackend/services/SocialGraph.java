@@ -0,0 +1,323 @@
+package com.example.pafbackend.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory friend graph with users mapped to dense int ids.
+ *
+ * Adjacency is stored in compressed sparse row form: the friends of user
+ * {@code u} are {@code targets[offsets[u] .. offsets[u + 1])}, sorted. Changes
+ * since the arrays were built go to an overlay of replacement rows; once the
+ * overlay holds {@code compactThreshold} ids the arrays are rebuilt with it
+ * folded in.
+ *
+ * Memory: 4 bytes per adjacency entry, and a friendship is an entry in both
+ * users' rows, so about 8 MB per million friendships. Add 4 bytes per user for
+ * the offsets and roughly 150 bytes per user for the string-to-int id map;
+ * overlay rows cost about 4 bytes per id plus 60 bytes per changed user.
+ *
+ * Thread-safe; queries share a read lock and changes take the write lock.
+ */
+final class SocialGraph {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int compactThreshold;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> userIds = new ArrayList<>(); // by ordinal
+
+    private int[] offsets = {0};
+    private int[] targets = new int[0];
+    private final Map<Integer, int[]> overlay = new HashMap<>();
+    private long overlaySize;
+    private boolean loading = true;
+
+    public static final class Suggestion {
+        private final String userId;
+        private final int mutualFriends;
+
+        Suggestion(String userId, int mutualFriends) {
+            this.userId = userId;
+            this.mutualFriends = mutualFriends;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public int getMutualFriends() {
+            return mutualFriends;
+        }
+    }
+
+    // Starts out loading: rows set before finishLoading() are packed in one pass rather than compacted as they come
+    SocialGraph(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    public void finishLoading() {
+        lock.writeLock().lock();
+        try {
+            loading = false;
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the user's friend list, as stored in their connections document. */
+    public void setFriends(String userId, List<String> friendIds) {
+        lock.writeLock().lock();
+        try {
+            int user = ordinal(userId);
+            int[] row = new int[friendIds.size()];
+            int size = 0;
+            for (String friendId : friendIds) {
+                if (friendId != null) {
+                    row[size++] = ordinal(friendId);
+                }
+            }
+            putRow(user, sortedDistinct(row, size));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addEdge(String userId, String friendId) {
+        lock.writeLock().lock();
+        try {
+            int user = ordinal(userId);
+            int friend = ordinal(friendId);
+            int[] row = row(user);
+            int index = Arrays.binarySearch(row, friend);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            int[] grown = new int[row.length + 1];
+            System.arraycopy(row, 0, grown, 0, index);
+            grown[index] = friend;
+            System.arraycopy(row, index, grown, index + 1, row.length - index);
+            putRow(user, grown);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeEdge(String userId, String friendId) {
+        lock.writeLock().lock();
+        try {
+            Integer user = ordinals.get(userId);
+            Integer friend = ordinals.get(friendId);
+            if (user == null || friend == null) {
+                return;
+            }
+            int[] row = row(user);
+            int index = Arrays.binarySearch(row, friend);
+            if (index < 0) {
+                return;
+            }
+            int[] shrunk = new int[row.length - 1];
+            System.arraycopy(row, 0, shrunk, 0, index);
+            System.arraycopy(row, index + 1, shrunk, index, row.length - index - 1);
+            putRow(user, shrunk);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int userCount() {
+        lock.readLock().lock();
+        try {
+            return userIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of adjacency entries, counting each friendship once per side. */
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            long edges = targets.length;
+            for (Map.Entry<Integer, int[]> changed : overlay.entrySet()) {
+                edges += changed.getValue().length - baseLength(changed.getKey());
+            }
+            return edges;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Friends the two users have in common, in id order. */
+    public List<String> mutualFriends(String userId, String otherId) {
+        lock.readLock().lock();
+        try {
+            Integer user = ordinals.get(userId);
+            Integer other = ordinals.get(otherId);
+            if (user == null || other == null) {
+                return List.of();
+            }
+            int[] a = row(user);
+            int[] b = row(other);
+            List<String> mutual = new ArrayList<>();
+            // Both rows are sorted, so one merge pass finds the intersection
+            for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    mutual.add(userIds.get(a[i]));
+                    i++;
+                    j++;
+                }
+            }
+            return mutual;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Friends of friends who are not yet friends of the user, ranked by the
+     * number of friends in common. At most {@code maxScan} second-degree
+     * entries are looked at, so users whose friends have huge friend lists
+     * get suggestions from a prefix of them rather than an unbounded scan.
+     */
+    public List<Suggestion> suggestions(String userId, int limit, int maxScan) {
+        lock.readLock().lock();
+        try {
+            Integer user = ordinals.get(userId);
+            if (user == null) {
+                return List.of();
+            }
+            int[] friends = row(user);
+            int[] candidates = new int[16];
+            int size = 0;
+            for (int friend : friends) {
+                // Read in place; copying every friend's row would dominate the cost
+                int[] source = overlay.get(friend);
+                int from = 0;
+                int to;
+                if (source != null) {
+                    to = source.length;
+                } else if (friend + 1 < offsets.length) {
+                    source = targets;
+                    from = offsets[friend];
+                    to = offsets[friend + 1];
+                } else {
+                    continue;
+                }
+                for (int i = from; i < to && size < maxScan; i++) {
+                    int candidate = source[i];
+                    if (candidate != user && Arrays.binarySearch(friends, candidate) < 0) {
+                        if (size == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, Math.min(maxScan, size * 2));
+                        }
+                        candidates[size++] = candidate;
+                    }
+                }
+            }
+            if (size == 0) {
+                return List.of();
+            }
+
+            // Runs of equal ids after sorting give the mutual-friend counts; pack (count, id) into a long to rank them
+            Arrays.sort(candidates, 0, size);
+            long[] ranked = new long[size];
+            int distinct = 0;
+            for (int start = 0, end; start < size; start = end) {
+                end = start + 1;
+                while (end < size && candidates[end] == candidates[start]) {
+                    end++;
+                }
+                ranked[distinct++] = ((long) (end - start) << 32) | (Integer.MAX_VALUE - candidates[start]);
+            }
+            Arrays.sort(ranked, 0, distinct);
+
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, distinct));
+            for (int i = distinct - 1; i >= 0 && suggestions.size() < limit; i--) {
+                int candidate = Integer.MAX_VALUE - (int) ranked[i];
+                suggestions.add(new Suggestion(userIds.get(candidate), (int) (ranked[i] >>> 32)));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int ordinal(String userId) {
+        Integer ordinal = ordinals.get(userId);
+        if (ordinal == null) {
+            ordinal = userIds.size();
+            userIds.add(userId);
+            ordinals.put(userId, ordinal);
+        }
+        return ordinal;
+    }
+
+    private int[] row(int user) {
+        int[] changed = overlay.get(user);
+        if (changed != null) {
+            return changed;
+        }
+        int length = baseLength(user);
+        return length == 0 ? new int[0] : Arrays.copyOfRange(targets, offsets[user], offsets[user] + length);
+    }
+
+    // Users added since the arrays were built have no base row
+    private int baseLength(int user) {
+        return user + 1 < offsets.length ? offsets[user + 1] - offsets[user] : 0;
+    }
+
+    private void putRow(int user, int[] row) {
+        int[] previous = overlay.put(user, row);
+        overlaySize += row.length - (previous != null ? previous.length : 0);
+        if (!loading && overlaySize >= compactThreshold) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int users = userIds.size();
+        int[] compactOffsets = new int[users + 1];
+        for (int user = 0; user < users; user++) {
+            compactOffsets[user + 1] = compactOffsets[user] + rowLength(user);
+        }
+        int[] compactTargets = new int[compactOffsets[users]];
+        for (int user = 0; user < users; user++) {
+            int[] changed = overlay.get(user);
+            if (changed != null) {
+                System.arraycopy(changed, 0, compactTargets, compactOffsets[user], changed.length);
+            } else if (baseLength(user) > 0) {
+                // Friends who have no row of their own yet sit past the end of offsets
+                System.arraycopy(targets, offsets[user], compactTargets, compactOffsets[user], baseLength(user));
+            }
+        }
+        offsets = compactOffsets;
+        targets = compactTargets;
+        overlay.clear();
+        overlaySize = 0;
+    }
+
+    private int rowLength(int user) {
+        int[] changed = overlay.get(user);
+        return changed != null ? changed.length : baseLength(user);
+    }
+
+    private static int[] sortedDistinct(int[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.FriendSuggestion;
+import com.example.pafbackend.models.UserConnection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * "People you may know" and mutual friends, answered from an in-memory
+ * {@link SocialGraph} instead of a friend-list query per friend.
+ *
+ * The graph is built from {@code userConnections} once the application is
+ * ready and kept current by {@link UserConnectionService} as friendships
+ * change. Changes made on other nodes are picked up by a full rebuild every
+ * {@code connections.graph.rebuild-interval-ms}. Until the first build
+ * finishes, the graph is empty and the endpoints return no results.
+ */
+@Slf4j
+@Service
+public class SocialGraphService {
+
+    private final MongoTemplate mongoTemplate;
+    private final int compactThreshold;
+    private final int maxScan;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("social-graph-"));
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+    private final Object swapLock = new Object();
+    private volatile SocialGraph graph;
+    // Changes made while a rebuild is streaming connections; replayed onto the new graph before it goes live
+    private List<Consumer<SocialGraph>> pendingDuringRebuild;
+
+    public SocialGraphService(MongoTemplate mongoTemplate,
+                              @Value("${connections.graph.compact-threshold:1000000}") int compactThreshold,
+                              @Value("${connections.graph.suggestions.max-scan:200000}") int maxScan) {
+        this.mongoTemplate = mongoTemplate;
+        this.compactThreshold = compactThreshold;
+        this.maxScan = maxScan;
+        this.graph = new SocialGraph(compactThreshold);
+        this.graph.finishLoading();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        queueRebuild();
+    }
+
+    @Scheduled(initialDelayString = "${connections.graph.rebuild-interval-ms:900000}",
+               fixedDelayString = "${connections.graph.rebuild-interval-ms:900000}")
+    public void scheduledRebuild() {
+        queueRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    public void friendsAdded(String userId, Collection<String> friendIds) {
+        apply(target -> friendIds.forEach(friendId -> {
+            target.addEdge(userId, friendId);
+            target.addEdge(friendId, userId);
+        }));
+    }
+
+    public void friendRemoved(String userId, String friendId) {
+        apply(target -> {
+            target.removeEdge(userId, friendId);
+            target.removeEdge(friendId, userId);
+        });
+    }
+
+    public List<FriendSuggestion> suggestions(String userId, int limit) {
+        return graph.suggestions(userId, limit, maxScan).stream()
+                .map(suggestion -> new FriendSuggestion(suggestion.getUserId(), suggestion.getMutualFriends()))
+                .toList();
+    }
+
+    public List<String> mutualFriends(String userId, String otherId) {
+        return graph.mutualFriends(userId, otherId);
+    }
+
+    private void apply(Consumer<SocialGraph> change) {
+        synchronized (swapLock) {
+            change.accept(graph);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(change);
+            }
+        }
+    }
+
+    // A rebuild slower than the interval must not pile up more behind it
+    private void queueRebuild() {
+        if (rebuildQueued.compareAndSet(false, true)) {
+            try {
+                loader.execute(this::rebuildQuietly);
+            } catch (RejectedExecutionException e) {
+                rebuildQueued.set(false);
+            }
+        }
+    }
+
+    private void rebuildQuietly() {
+        rebuildQueued.set(false);
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Rebuilding the social graph failed", e);
+        }
+    }
+
+    void rebuild() {
+        synchronized (swapLock) {
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        SocialGraph fresh = new SocialGraph(compactThreshold);
+        boolean complete = false;
+        try {
+            Query query = new Query();
+            query.fields().include("userId", "friendIds");
+            try (Stream<UserConnection> connections = mongoTemplate.stream(query, UserConnection.class)) {
+                connections.forEach(connection -> {
+                    if (connection.getUserId() != null && connection.getFriendIds() != null) {
+                        fresh.setFriends(connection.getUserId(), connection.getFriendIds());
+                    }
+                });
+            }
+            fresh.finishLoading();
+            complete = true;
+        } finally {
+            synchronized (swapLock) {
+                if (complete) {
+                    pendingDuringRebuild.forEach(change -> change.accept(fresh));
+                    graph = fresh;
+                }
+                pendingDuringRebuild = null;
+            }
+        }
+        log.info("Social graph rebuilt with {} users and {} friend entries", fresh.userCount(), fresh.edgeCount());
+    }
+}
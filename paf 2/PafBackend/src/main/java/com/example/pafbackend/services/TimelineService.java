@@ -0,0 +1,191 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.models.Post;
+import com.example.pafbackend.models.TimelineEntry;
+import com.example.pafbackend.repositories.KeysetCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Home timeline of posts from the people a user has friended.
+ *
+ * New posts are pushed into each follower's {@link TimelineEntry} rows off the
+ * request thread. Authors with more than {@code timeline.fan-out.max-followers}
+ * followers are not pushed; their posts are flagged {@code fanOutOnRead} and
+ * merged into the feed when it is read instead.
+ */
+@Slf4j
+@Service
+public class TimelineService {
+
+    private static final Comparator<Post> NEWEST_FIRST = Comparator
+            .comparing(Post::getTimestamp, Comparator.reverseOrder())
+            .thenComparing(Post::getId, Comparator.reverseOrder());
+
+    private final MongoTemplate mongoTemplate;
+    private final ConnectionEdgeService connectionEdgeService;
+    private final ExecutorService fanOutExecutor;
+
+    @Value("${timeline.fan-out.max-followers:10000}")
+    private long maxFollowers;
+
+    @Value("${timeline.fan-out.batch-size:500}")
+    private int batchSize;
+
+    public TimelineService(MongoTemplate mongoTemplate, ConnectionEdgeService connectionEdgeService,
+                           @Value("${timeline.fan-out.threads:4}") int threads,
+                           @Value("${timeline.fan-out.queue-capacity:10000}") int queueCapacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.connectionEdgeService = connectionEdgeService;
+        // Callers run the task themselves once the queue is full rather than dropping it
+        this.fanOutExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("timeline-fan-out-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+    }
+
+    public void fanOutAsync(Post post) {
+        fanOutExecutor.execute(() -> {
+            try {
+                fanOut(post);
+            } catch (Exception e) {
+                log.error("Timeline fan-out failed for post {}", post.getId(), e);
+            }
+        });
+    }
+
+    void fanOut(Post post) {
+        long followers = connectionEdgeService.countFollowers(post.getUserId());
+        if (followers > maxFollowers) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(post.getId())),
+                    Update.update("fanOutOnRead", true), Post.class);
+            return;
+        }
+
+        List<String> batch = new ArrayList<>(batchSize);
+        try (Stream<String> stream = connectionEdgeService.streamFollowerIds(post.getUserId())) {
+            stream.forEach(followerId -> {
+                batch.add(followerId);
+                if (batch.size() >= batchSize) {
+                    writeEntries(post, batch);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            writeEntries(post, batch);
+        }
+    }
+
+    // Upserts keep a retried fan-out from duplicating rows
+    private void writeEntries(Post post, List<String> ownerIds) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TimelineEntry.class);
+        for (String ownerId : ownerIds) {
+            Query entry = Query.query(Criteria.where("ownerId").is(ownerId).and("postId").is(post.getId()));
+            Update update = new Update()
+                    .setOnInsert("authorId", post.getUserId())
+                    .setOnInsert("timestamp", post.getTimestamp());
+            bulk.upsert(entry, update);
+        }
+        bulk.execute();
+    }
+
+    public CursorPage<Post> getFeed(String userId, String cursor, int limit) {
+        KeysetCursor position = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+
+        Query entriesQuery = new Query(KeysetCursor.and(
+                Criteria.where("ownerId").is(userId),
+                position == null ? null : position.before("timestamp", "postId")))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "postId"))
+                .limit(limit + 1);
+        List<TimelineEntry> entries = mongoTemplate.find(entriesQuery, TimelineEntry.class);
+
+        List<Post> pulled = findFanOutOnReadPosts(userId, position, limit);
+
+        // A source that returned more than a page may hide older rows; nothing past its
+        // last kept row can be served yet or those hidden rows would be skipped
+        KeysetCursor boundary = null;
+        if (entries.size() > limit) {
+            entries = entries.subList(0, limit);
+            TimelineEntry last = entries.get(limit - 1);
+            boundary = KeysetCursor.of(last.getTimestamp(), last.getPostId());
+        }
+        if (pulled.size() > limit) {
+            pulled = pulled.subList(0, limit);
+            Post last = pulled.get(limit - 1);
+            KeysetCursor pulledBoundary = KeysetCursor.of(last.getTimestamp(), last.getId());
+            if (boundary == null || compare(pulledBoundary, boundary) > 0) {
+                boundary = pulledBoundary;
+            }
+        }
+
+        Map<String, Post> merged = new LinkedHashMap<>();
+        if (!entries.isEmpty()) {
+            List<String> postIds = entries.stream().map(TimelineEntry::getPostId).toList();
+            mongoTemplate.find(Query.query(Criteria.where("id").in(postIds)), Post.class)
+                    .forEach(post -> merged.put(post.getId(), post));
+        }
+        pulled.forEach(post -> merged.putIfAbsent(post.getId(), post));
+
+        KeysetCursor oldestAllowed = boundary;
+        List<Post> posts = merged.values().stream()
+                .filter(post -> oldestAllowed == null
+                        || compare(KeysetCursor.of(post.getTimestamp(), post.getId()), oldestAllowed) >= 0)
+                .sorted(NEWEST_FIRST)
+                .toList();
+
+        if (posts.size() > limit) {
+            List<Post> page = new ArrayList<>(posts.subList(0, limit));
+            Post last = page.get(limit - 1);
+            return new CursorPage<>(page, KeysetCursor.of(last.getTimestamp(), last.getId()).encode());
+        }
+        // Everything up to the boundary fits on this page, so the next one starts there
+        return new CursorPage<>(posts, boundary == null ? null : boundary.encode());
+    }
+
+    // Orders positions newest first: negative when a is older than b
+    private static int compare(KeysetCursor a, KeysetCursor b) {
+        int byTime = a.getTimestamp().compareTo(b.getTimestamp());
+        return byTime != 0 ? byTime : a.getId().compareTo(b.getId());
+    }
+
+    private List<Post> findFanOutOnReadPosts(String userId, KeysetCursor position, int limit) {
+        List<String> friendIds = connectionEdgeService.followingIds(userId);
+        if (friendIds.isEmpty()) {
+            return List.of();
+        }
+
+        Query postsQuery = new Query(KeysetCursor.and(
+                Criteria.where("fanOutOnRead").is(true).and("userId").in(friendIds),
+                position == null ? null : position.before("timestamp", "id")))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "id"))
+                .limit(limit + 1);
+        return mongoTemplate.find(postsQuery, Post.class);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+
+@Component
+public class TrendingOutboxConsumer implements OutboxConsumer {
+
+    private final TrendingService trendingService;
+
+    public TrendingOutboxConsumer(TrendingService trendingService) {
+        this.trendingService = trendingService;
+    }
+
+    @Override
+    public String name() {
+        return "trending";
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        Map<String, Object> payload = event.getPayload();
+        switch (event.getType()) {
+            case OutboxEvent.LIKE_ADDED -> trendingService.likeAdded(like(payload));
+            case OutboxEvent.LIKE_REMOVED -> trendingService.likeRemoved(like(payload));
+            case OutboxEvent.COMMENT_ADDED -> trendingService.commentAdded(comment(payload));
+            case OutboxEvent.COMMENT_REMOVED -> trendingService.commentRemoved(comment(payload));
+            default -> {
+            }
+        }
+    }
+
+    private static Like like(Map<String, Object> payload) {
+        return new Like((String) payload.get("likeId"), (String) payload.get("postId"), (String) payload.get("userId"));
+    }
+
+    private static Comment comment(Map<String, Object> payload) {
+        Comment comment = new Comment();
+        comment.setId((String) payload.get("commentId"));
+        comment.setPostId((String) payload.get("postId"));
+        comment.setUserId((String) payload.get("userId"));
+        comment.setTimestamp((Date) payload.get("timestamp"));
+        return comment;
+    }
+}
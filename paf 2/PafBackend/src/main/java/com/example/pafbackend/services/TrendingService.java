@@ -0,0 +1,417 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Bookmark;
+import com.example.pafbackend.models.Comment;
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.Post;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Trending posts, overall and per cuisine, from like, comment and bookmark
+ * events with exponential time decay.
+ *
+ * Scores use forward decay: an event at time t adds
+ * {@code weight * e^(rate * (t - epoch))} instead of every score shrinking as
+ * time passes. All scores would be scaled by the same factor at any later
+ * moment, so rankings only change when events arrive and nothing has to be
+ * touched on a timer except an occasional rebase of the epoch to keep the
+ * numbers small.
+ *
+ * All state is owned by a single worker thread, so events never block the
+ * request that produced them. Readers see the per-cuisine top-K lists the
+ * worker publishes. Scores are checkpointed to disk; without a checkpoint
+ * the last few half-lives of history are replayed once.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    private static final double LIKE_WEIGHT = 1;
+    private static final double COMMENT_WEIGHT = 3;
+    private static final double BOOKMARK_WEIGHT = 2;
+    // Decayed scores below this (a single like about four half-lives old) are forgotten
+    private static final double MIN_SCORE = 0.05;
+    // Rebase once e^(rate * (now - epoch)) passes e^30, far from double overflow
+    private static final double MAX_EXPONENT = 30;
+    private static final String ALL = "";
+    private static final int MAGIC = 0x54524e44;
+    private static final int VERSION = 1;
+    private static final int LOOKUP_BATCH = 500;
+
+    private static final Comparator<Scored> BY_SCORE = Comparator.comparingDouble((Scored s) -> s.weight).reversed()
+            .thenComparing(s -> s.postId);
+
+    private final MongoTemplate mongoTemplate;
+    private final double decayPerMs;
+    private final long halfLifeMs;
+    private final int topK;
+    private final Path checkpointPath;
+    private final ThreadPoolExecutor worker;
+
+    // Owned by the worker thread
+    private final Map<String, Scored> scores = new HashMap<>();
+    private final Map<String, TreeSet<Scored>> topByCuisine = new HashMap<>();
+    private long epochMillis = System.currentTimeMillis();
+    private boolean dirty;
+
+    private final Map<String, List<String>> published = new ConcurrentHashMap<>();
+
+    private static final class Scored {
+        private final String postId;
+        private final String cuisine;
+        private double weight; // forward-decayed, relative to epochMillis
+
+        Scored(String postId, String cuisine, double weight) {
+            this.postId = postId;
+            this.cuisine = cuisine;
+            this.weight = weight;
+        }
+    }
+
+    public TrendingService(MongoTemplate mongoTemplate,
+                           @Value("${trending.half-life-hours:24}") double halfLifeHours,
+                           @Value("${trending.top-k:100}") int topK,
+                           @Value("${trending.queue-capacity:100000}") int queueCapacity,
+                           @Value("${trending.checkpoint-path:data/trending/scores.bin}") String checkpointPath) {
+        this.mongoTemplate = mongoTemplate;
+        this.halfLifeMs = (long) (halfLifeHours * 3_600_000);
+        this.decayPerMs = Math.log(2) / halfLifeMs;
+        this.topK = topK;
+        this.checkpointPath = Paths.get(checkpointPath);
+        // Trending is best-effort: under overload new events are dropped rather than slowing down writers
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("trending-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PostConstruct
+    public void load() {
+        // Queued ahead of any event, so events always apply on top of the restored state
+        worker.execute(() -> {
+            try {
+                if (!loadCheckpoint()) {
+                    seedFromHistory();
+                }
+            } catch (Exception e) {
+                log.error("Restoring trending scores failed; starting empty", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        worker.execute(this::writeCheckpoint);
+        worker.shutdown();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public void likeAdded(Like like) {
+        record(like.getPostId(), LIKE_WEIGHT, createdAt(like.getId(), null));
+    }
+
+    public void likeRemoved(Like like) {
+        record(like.getPostId(), -LIKE_WEIGHT, createdAt(like.getId(), null));
+    }
+
+    public void commentAdded(Comment comment) {
+        record(comment.getPostId(), COMMENT_WEIGHT, createdAt(comment.getId(), comment.getTimestamp()));
+    }
+
+    public void commentRemoved(Comment comment) {
+        record(comment.getPostId(), -COMMENT_WEIGHT, createdAt(comment.getId(), comment.getTimestamp()));
+    }
+
+    public void bookmarkAdded(Bookmark bookmark) {
+        if ("post".equals(bookmark.getResourceType())) {
+            record(bookmark.getResourceId(), BOOKMARK_WEIGHT, createdAt(bookmark.getId(), bookmark.getCreatedAt()));
+        }
+    }
+
+    public void bookmarkRemoved(Bookmark bookmark) {
+        if ("post".equals(bookmark.getResourceType())) {
+            record(bookmark.getResourceId(), -BOOKMARK_WEIGHT, createdAt(bookmark.getId(), bookmark.getCreatedAt()));
+        }
+    }
+
+    public void postRemoved(String postId) {
+        worker.execute(() -> {
+            Scored scored = scores.remove(postId);
+            if (scored != null) {
+                unlist(scored);
+                publish(scored.cuisine);
+                publish(ALL);
+                dirty = true;
+            }
+        });
+    }
+
+    /** Post ids, hottest first; {@code cuisineType} null for all cuisines. */
+    public List<String> trendingIds(String cuisineType, int limit) {
+        List<String> ids = published.getOrDefault(cuisineKey(cuisineType), List.of());
+        return ids.size() <= limit ? ids : ids.subList(0, limit);
+    }
+
+    public List<Post> trending(String cuisineType, int limit) {
+        List<String> ids = trendingIds(cuisineType, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Post> postsById = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("id").in(ids)), Post.class)
+                .forEach(post -> postsById.put(post.getId(), post));
+        List<Post> ranked = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Post post = postsById.get(id);
+            if (post != null) {
+                ranked.add(post);
+            }
+        }
+        return ranked;
+    }
+
+    // A removal subtracts what the original event added, decayed from the same moment
+    private void record(String postId, double weight, long at) {
+        if (postId == null) {
+            return;
+        }
+        worker.execute(() -> {
+            Scored scored = scores.get(postId);
+            if (scored == null) {
+                if (weight <= 0) {
+                    return;
+                }
+                Post post = mongoTemplate.findOne(cuisineQuery(Criteria.where("id").is(postId)), Post.class);
+                if (post == null) {
+                    return;
+                }
+                scored = new Scored(postId, cuisineKey(post.getCuisineType()), 0);
+                scores.put(postId, scored);
+            } else {
+                unlist(scored);
+            }
+            scored.weight = Math.max(0, scored.weight + weight * Math.exp(decayPerMs * (at - epochMillis)));
+            if (scored.weight == 0) {
+                scores.remove(postId);
+            } else {
+                list(scored);
+            }
+            publish(scored.cuisine);
+            publish(ALL);
+            dirty = true;
+        });
+    }
+
+    /**
+     * Forgets posts whose decayed score has faded, rebases the epoch when
+     * needed and rebuilds every top-K list from the full score map. The
+     * rebuild matters after removals: an event can only push a post into a
+     * bounded list, so a post that should replace a demoted one waits for it.
+     */
+    @Scheduled(initialDelayString = "${trending.maintenance-interval-ms:60000}",
+               fixedDelayString = "${trending.maintenance-interval-ms:60000}")
+    public void maintain() {
+        worker.execute(() -> {
+            long now = System.currentTimeMillis();
+            double exponent = decayPerMs * (now - epochMillis);
+            double threshold = MIN_SCORE * Math.exp(exponent);
+            scores.values().removeIf(scored -> scored.weight < threshold);
+            if (exponent > MAX_EXPONENT) {
+                double factor = Math.exp(-exponent);
+                scores.values().forEach(scored -> scored.weight *= factor);
+                epochMillis = now;
+            }
+            rebuildTopLists();
+            dirty = true;
+        });
+    }
+
+    @Scheduled(initialDelayString = "${trending.checkpoint-interval-ms:300000}",
+               fixedDelayString = "${trending.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        worker.execute(this::writeCheckpoint);
+    }
+
+    private void list(Scored scored) {
+        offer(scored.cuisine, scored);
+        offer(ALL, scored);
+    }
+
+    private void unlist(Scored scored) {
+        // Must run before the weight changes, or the sorted sets cannot find the entry
+        for (String cuisine : new String[] {scored.cuisine, ALL}) {
+            TreeSet<Scored> top = topByCuisine.get(cuisine);
+            if (top != null) {
+                top.remove(scored);
+            }
+        }
+    }
+
+    private void offer(String cuisine, Scored scored) {
+        TreeSet<Scored> top = topByCuisine.computeIfAbsent(cuisine, c -> new TreeSet<>(BY_SCORE));
+        top.add(scored);
+        if (top.size() > topK) {
+            top.pollLast();
+        }
+    }
+
+    private void publish(String cuisine) {
+        TreeSet<Scored> top = topByCuisine.get(cuisine);
+        if (top == null || top.isEmpty()) {
+            published.remove(cuisine);
+        } else {
+            published.put(cuisine, top.stream().map(scored -> scored.postId).toList());
+        }
+    }
+
+    private void rebuildTopLists() {
+        topByCuisine.clear();
+        topByCuisine.put(ALL, new TreeSet<>(BY_SCORE));
+        scores.values().forEach(this::list);
+        published.keySet().removeIf(cuisine -> !topByCuisine.containsKey(cuisine));
+        topByCuisine.keySet().forEach(this::publish);
+    }
+
+    private boolean loadCheckpoint() {
+        if (!Files.exists(checkpointPath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a trending checkpoint or unsupported version");
+            }
+            epochMillis = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Scored scored = new Scored(in.readUTF(), in.readUTF(), in.readDouble());
+                scores.put(scored.postId, scored);
+            }
+            rebuildTopLists();
+            log.info("Loaded trending checkpoint with {} posts", scores.size());
+            return true;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable trending checkpoint {}", checkpointPath, e);
+            scores.clear();
+            return false;
+        }
+    }
+
+    private void writeCheckpoint() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            Path parent = checkpointPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "trending", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(epochMillis);
+                out.writeInt(scores.size());
+                for (Scored scored : scores.values()) {
+                    out.writeUTF(scored.postId);
+                    out.writeUTF(scored.cuisine);
+                    out.writeDouble(scored.weight);
+                }
+            }
+            Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            log.error("Writing trending checkpoint failed", e);
+        }
+    }
+
+    // First start only: replay events young enough to still matter (about four half-lives)
+    private void seedFromHistory() {
+        long since = System.currentTimeMillis() - 4 * halfLifeMs;
+        Criteria recentIds = Criteria.where("_id").gte(new ObjectId(new Date(since)));
+        Map<String, Double> weights = new HashMap<>();
+
+        Query likes = Query.query(recentIds);
+        likes.fields().include("postId");
+        try (Stream<Like> stream = mongoTemplate.stream(likes, Like.class)) {
+            stream.forEach(like -> seed(weights, like.getPostId(), LIKE_WEIGHT, createdAt(like.getId(), null)));
+        }
+        Query comments = Query.query(recentIds);
+        comments.fields().include("postId", "timestamp");
+        try (Stream<Comment> stream = mongoTemplate.stream(comments, Comment.class)) {
+            stream.forEach(comment -> seed(weights, comment.getPostId(), COMMENT_WEIGHT,
+                    createdAt(comment.getId(), comment.getTimestamp())));
+        }
+        Query bookmarks = Query.query(Criteria.where("resourceType").is("post").and("createdAt").gte(new Date(since)));
+        bookmarks.fields().include("resourceId", "createdAt");
+        try (Stream<Bookmark> stream = mongoTemplate.stream(bookmarks, Bookmark.class)) {
+            stream.forEach(bookmark -> seed(weights, bookmark.getResourceId(), BOOKMARK_WEIGHT,
+                    createdAt(bookmark.getId(), bookmark.getCreatedAt())));
+        }
+
+        List<String> postIds = new ArrayList<>(weights.keySet());
+        for (int from = 0; from < postIds.size(); from += LOOKUP_BATCH) {
+            List<String> batch = postIds.subList(from, Math.min(postIds.size(), from + LOOKUP_BATCH));
+            for (Post post : mongoTemplate.find(cuisineQuery(Criteria.where("id").in(batch)), Post.class)) {
+                scores.put(post.getId(), new Scored(post.getId(), cuisineKey(post.getCuisineType()),
+                        weights.get(post.getId())));
+            }
+        }
+        rebuildTopLists();
+        dirty = true;
+        log.info("Seeded trending scores for {} posts from recent history", scores.size());
+    }
+
+    private void seed(Map<String, Double> weights, String postId, double weight, long at) {
+        if (postId != null) {
+            weights.merge(postId, weight * Math.exp(decayPerMs * (at - epochMillis)), Double::sum);
+        }
+    }
+
+    private static Query cuisineQuery(Criteria criteria) {
+        Query query = Query.query(criteria);
+        query.fields().include("cuisineType");
+        return query;
+    }
+
+    private static String cuisineKey(String cuisineType) {
+        return cuisineType == null ? ALL : cuisineType.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Likes have no timestamp of their own, but their ObjectId carries the creation time
+    private static long createdAt(String id, Date timestamp) {
+        if (timestamp != null) {
+            return timestamp.getTime();
+        }
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id).getDate().getTime() : System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.UserConnection;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Friend lists kept as sets and changed only with atomic {@code $addToSet}
+ * and {@code $pull} upserts, so concurrent requests neither lose nor
+ * duplicate friends. Friendship is symmetric: both users' documents change
+ * in one bulk write.
+ *
+ * Upserts need a unique index on userId, or two of them racing on a new user
+ * would create two documents. It is created once the application is ready,
+ * after duplicate documents from before it existed have been merged.
+ */
+@Slf4j
+@Service
+public class UserConnectionService {
+
+    private static final String UNIQUE_INDEX = "user_unique_idx";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SocialGraphService socialGraphService;
+    private final ConnectionEdgeService connectionEdgeService;
+    private final ExecutorService migrator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("connection-index-"));
+
+    public UserConnectionService(MongoTemplate mongoTemplate, SocialGraphService socialGraphService,
+                                 ConnectionEdgeService connectionEdgeService) {
+        this.mongoTemplate = mongoTemplate;
+        this.socialGraphService = socialGraphService;
+        this.connectionEdgeService = connectionEdgeService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueIndex() {
+        migrator.execute(this::createUniqueIndex);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrator.shutdownNow();
+    }
+
+    /**
+     * Makes the user friends with each of {@code friendIds}, in both
+     * directions. Returns true when the user had no connections document
+     * before. Self-references and blank ids are ignored.
+     */
+    public boolean addFriends(String userId, Collection<String> friendIds) {
+        Set<String> friends = new LinkedHashSet<>();
+        for (String friendId : friendIds) {
+            if (friendId != null && !friendId.isBlank() && !friendId.equals(userId)) {
+                friends.add(friendId);
+            }
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserConnection.class);
+        // Always upserted, so a user without friends still gets a document
+        bulk.upsert(byUser(userId), new Update().addToSet("friendIds").each(friends.toArray()));
+        for (String friendId : friends) {
+            bulk.upsert(byUser(friendId), new Update().addToSet("friendIds", userId));
+        }
+        BulkWriteResult result = executeWithRetry(bulk);
+        connectionEdgeService.addBoth(userId, friends);
+        socialGraphService.friendsAdded(userId, friends);
+        return result.getUpserts().stream().anyMatch(upsert -> upsert.getIndex() == 0);
+    }
+
+    /** Ends the friendship in both directions. Returns false when the user has no connections document. */
+    public boolean unfriend(String userId, String friendId) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, UserConnection.class);
+        bulk.updateOne(byUser(userId), new Update().pull("friendIds", friendId));
+        bulk.updateOne(byUser(friendId), new Update().pull("friendIds", userId));
+        BulkWriteResult result = bulk.execute();
+        connectionEdgeService.removeBoth(userId, friendId);
+        socialGraphService.friendRemoved(userId, friendId);
+        if (result.getMatchedCount() > 0) {
+            return true;
+        }
+        return mongoTemplate.exists(byUser(userId), UserConnection.class);
+    }
+
+    /**
+     * Which of {@code candidateIds} are friends of the user. Mongo intersects
+     * the friend list with the candidates, so only the matches come back.
+     */
+    public Set<String> friendsAmong(String userId, Collection<String> candidateIds) {
+        Set<String> friends = new HashSet<>();
+        if (candidateIds.isEmpty()) {
+            return friends;
+        }
+        Aggregation intersection = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId)),
+                Aggregation.project()
+                        .and(context -> new Document("$setIntersection",
+                                List.of("$friendIds", List.copyOf(candidateIds))))
+                        .as("friends"));
+        Document result = mongoTemplate.aggregate(intersection, UserConnection.class, Document.class)
+                .getUniqueMappedResult();
+        if (result != null) {
+            friends.addAll(result.getList("friends", String.class, List.of()));
+        }
+        return friends;
+    }
+
+    private static Query byUser(String userId) {
+        return Query.query(Criteria.where("userId").is(userId));
+    }
+
+    // Two upserts of the same new userId race on the unique index; every operation is idempotent, so the loser reruns
+    private static BulkWriteResult executeWithRetry(BulkOperations bulk) {
+        try {
+            return bulk.execute();
+        } catch (BulkOperationException e) {
+            if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+                throw e;
+            }
+            return bulk.execute();
+        }
+    }
+
+    void createUniqueIndex() {
+        // A document inserted between the merge and the index build fails the build; one more pass catches it
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                mergeDuplicates();
+                mongoTemplate.indexOps(UserConnection.class).ensureIndex(new Index()
+                        .on("userId", Sort.Direction.ASC)
+                        .unique()
+                        .named(UNIQUE_INDEX));
+                return;
+            } catch (DuplicateKeyException | UncategorizedMongoDbException e) {
+                log.warn("Creating the unique user connection index failed (attempt {})", attempt, e);
+            }
+        }
+    }
+
+    // Folds every user's duplicate documents into the oldest one, and repeated ids inside a list into one
+    void mergeDuplicates() {
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.group("userId").push("_id").as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        int merged = 0;
+        for (Document group : mongoTemplate.aggregate(duplicates, UserConnection.class, Document.class)) {
+            // ObjectIds sort by creation time
+            List<Object> ids = group.getList("ids", Object.class).stream()
+                    .sorted((a, b) -> String.valueOf(a).compareTo(String.valueOf(b)))
+                    .toList();
+            List<Object> extras = ids.subList(1, ids.size());
+            Set<String> friendIds = new LinkedHashSet<>();
+            for (UserConnection extra : mongoTemplate.find(Query.query(Criteria.where("_id").in(extras)),
+                    UserConnection.class)) {
+                if (extra.getFriendIds() != null) {
+                    friendIds.addAll(extra.getFriendIds());
+                }
+            }
+            // Unmarked so the edge migration picks up the friends merged in
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(ids.get(0))),
+                    new Update().addToSet("friendIds").each(friendIds.toArray()).unset("edgesMigrated"),
+                    UserConnection.class);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(extras)), UserConnection.class);
+            merged += extras.size();
+        }
+        if (merged > 0) {
+            log.info("Merged {} duplicate user connection documents", merged);
+        }
+
+        // $setUnion with an empty array drops repeats; only lists that have any are rewritten
+        Document friendIds = new Document("$ifNull", List.of("$friendIds", List.of()));
+        Document distinct = new Document("$setUnion", List.of(friendIds, List.of()));
+        long deduplicated = mongoTemplate.getCollection(mongoTemplate.getCollectionName(UserConnection.class))
+                .updateMany(
+                        new Document("$expr", new Document("$lt", List.of(
+                                new Document("$size", distinct), new Document("$size", friendIds)))),
+                        List.of(new Document("$set", new Document("friendIds", distinct))))
+                .getModifiedCount();
+        if (deduplicated > 0) {
+            log.info("Removed repeated friend ids from {} user connection documents", deduplicated);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.pafbackend.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        Date timestamp = new Date(1_700_000_000_123L);
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.of(timestamp, "65a1b2c3d4e5f60718293a4b").encode());
+
+        assertEquals(timestamp, cursor.getTimestamp());
+        assertEquals("65a1b2c3d4e5f60718293a4b", cursor.getId());
+    }
+
+    @Test
+    void encodedFormIsUrlSafe() {
+        String token = KeysetCursor.of(new Date(0), "id/with+odd?chars").encode();
+
+        assertFalse(token.contains("+") || token.contains("/") || token.contains("="), token);
+        assertEquals("id/with+odd?chars", KeysetCursor.decode(token).getId());
+    }
+
+    @Test
+    void idMayContainTheSeparator() {
+        assertEquals("a:b", KeysetCursor.decode(KeysetCursor.of(new Date(5), "a:b").encode()).getId());
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode("no-separator")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode(":missing-time")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode("123:")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode("yesterday:abc")));
+    }
+
+    @Test
+    void andSkipsAMissingSide() {
+        Criteria filter = Criteria.where("userId").is("u1");
+        Criteria cursor = KeysetCursor.of(new Date(0), "x").before("timestamp", "id");
+
+        assertSame(filter, KeysetCursor.and(filter, null));
+        assertSame(cursor, KeysetCursor.and(null, cursor));
+        assertTrue(KeysetCursor.and(filter, cursor).getCriteriaObject().containsKey("$and"));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.pafbackend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactBitmapTest {
+
+    @Test
+    void addRemoveAndContainsAcrossChunks() {
+        CompactBitmap bitmap = new CompactBitmap();
+        bitmap.add(3);
+        bitmap.add(70_000);
+        bitmap.add(3);
+        bitmap.add(Integer.MAX_VALUE);
+
+        assertEquals(3, bitmap.cardinality());
+        assertEquals(3, bitmap.chunkCount());
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(70_001));
+
+        bitmap.remove(70_000);
+        bitmap.remove(12345);
+        assertEquals(2, bitmap.cardinality());
+        assertEquals(2, bitmap.chunkCount());
+        assertEquals(List.of(3, Integer.MAX_VALUE), members(bitmap));
+    }
+
+    @Test
+    void denseChunkSwitchesToBitsetAndBack() {
+        CompactBitmap bitmap = new CompactBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals(10_000, bitmap.cardinality());
+        assertTrue(bitmap.contains(8190));
+        assertFalse(bitmap.contains(8191));
+
+        for (int i = 0; i < 10_000; i += 2) {
+            bitmap.remove(i * 2);
+        }
+        assertEquals(5_000, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(2));
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 1; i < 10_000; i += 2) {
+            remaining.add(i * 2);
+        }
+        assertEquals(remaining, members(bitmap));
+    }
+
+    @Test
+    void forEachVisitsMembersInOrder() {
+        CompactBitmap bitmap = new CompactBitmap();
+        for (int value : new int[]{200_000, 5, 65_536, 65_535, 0}) {
+            bitmap.add(value);
+        }
+        assertEquals(List.of(0, 5, 65_535, 65_536, 200_000), members(bitmap));
+    }
+
+    @Test
+    void orMergesSparseAndDenseChunks() {
+        CompactBitmap left = new CompactBitmap();
+        CompactBitmap right = new CompactBitmap();
+        TreeSet<Integer> union = new TreeSet<>();
+        for (int i = 0; i < 6_000; i++) {
+            left.add(i * 3);
+            union.add(i * 3);
+        }
+        for (int i = 0; i < 100; i++) {
+            right.add(i * 5);
+            right.add(300_000 + i);
+            union.add(i * 5);
+            union.add(300_000 + i);
+        }
+
+        right.or(left);
+        left.or(right);
+
+        assertEquals(new ArrayList<>(union), members(left));
+        assertEquals(new ArrayList<>(union), members(right));
+        // The merge copies chunks it adopts, so the sources stay independent
+        right.remove(300_000);
+        assertTrue(left.contains(300_000));
+    }
+
+    @Test
+    void matchesAReferenceSetUnderRandomChurn() {
+        Random random = new Random(42);
+        CompactBitmap bitmap = new CompactBitmap();
+        TreeSet<Integer> reference = new TreeSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(3 * 65_536);
+            if (random.nextInt(3) == 0) {
+                bitmap.remove(value);
+                reference.remove(value);
+            } else {
+                bitmap.add(value);
+                reference.add(value);
+            }
+        }
+
+        assertEquals(reference.size(), bitmap.cardinality());
+        assertEquals(new ArrayList<>(reference), members(bitmap));
+    }
+
+    private static List<Integer> members(CompactBitmap bitmap) {
+        List<Integer> members = new ArrayList<>();
+        bitmap.forEach(members::add);
+        return members;
+    }
+}
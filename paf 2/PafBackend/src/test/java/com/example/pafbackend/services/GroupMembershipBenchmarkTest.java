@@ -0,0 +1,121 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.dto.CursorPage;
+import com.example.pafbackend.models.Group;
+import com.example.pafbackend.models.GroupMembership;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Membership operations on a 100k-member group, against the old embedded array; run with -Dbenchmarks=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class GroupMembershipBenchmarkTest {
+
+    private static final int MEMBERS = 100_000;
+    private static final int OPERATIONS = 1_000;
+
+    @Autowired
+    private GroupMembershipService groupMembershipService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final String prefix = "benchmark-" + UUID.randomUUID() + "-";
+    private final List<String> groupIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(Query.query(Criteria.where("groupId").in(groupIds)), GroupMembership.class);
+        mongoTemplate.remove(Query.query(Criteria.where("id").in(groupIds)), Group.class);
+    }
+
+    @Test
+    void membershipsAtOneHundredThousandMembers() {
+        Group group = new Group();
+        group.setName(prefix + "group");
+        group.setCreatorId(prefix + "creator");
+        group = groupMembershipService.create(group);
+        groupIds.add(group.getId());
+
+        List<String> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(prefix + "member-" + i);
+        }
+        long start = System.nanoTime();
+        groupMembershipService.replaceMembers(group, members);
+        report("bulk load of " + MEMBERS + " members", start, 1);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            groupMembershipService.join(group.getId(), prefix + "joiner-" + i);
+        }
+        report("join", start, OPERATIONS);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            groupMembershipService.promote(group.getId(), prefix + "joiner-" + i, group.getCreatorId());
+        }
+        report("promote", start, OPERATIONS);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            groupMembershipService.isAdmin(group.getId(), prefix + "member-" + i);
+        }
+        report("admin check", start, OPERATIONS);
+
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            groupMembershipService.leave(group.getId(), prefix + "joiner-" + i);
+        }
+        report("leave", start, OPERATIONS);
+
+        start = System.nanoTime();
+        int pages = 0;
+        long listed = 0;
+        String cursor = null;
+        do {
+            CursorPage<GroupMembership> page = groupMembershipService.members(group.getId(), null, cursor, 200);
+            listed += page.getItems().size();
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        report("member page of 200", start, pages);
+
+        assertEquals(MEMBERS + 1, listed);
+        assertEquals(MEMBERS + 1, mongoTemplate.findById(group.getId(), Group.class).getMemberCount());
+
+        // The layout this replaced: every join rewrites a document holding the whole array
+        Document legacy = new Document("name", prefix + "legacy").append("memberIds", members);
+        mongoTemplate.insert(legacy, mongoTemplate.getCollectionName(Group.class));
+        String legacyId = legacy.getObjectId("_id").toHexString();
+        groupIds.add(legacyId);
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(legacyId)),
+                    new Update().addToSet("memberIds", prefix + "joiner-" + i), Group.class);
+        }
+        report("legacy $addToSet join", start, OPERATIONS);
+    }
+
+    private static void report(String operation, long startNanos, int count) {
+        double totalMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+        log.info("{}: {} ops, {} ms total, {} ms/op", operation, count,
+                String.format("%.1f", totalMs), String.format("%.3f", totalMs / count));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.pafbackend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    @Test
+    void findsOnlyDocumentsWithTheTerm() {
+        InvertedIndex index = new InvertedIndex();
+        index.put("a", Map.of("tomato", 1));
+        index.put("b", Map.of("tomato", 1, "basil", 1));
+        index.put("c", Map.of("tomato", 1));
+
+        assertEquals(List.of("b"), keys(index.search(List.of("basil"), 10)));
+        assertEquals(List.of(), index.search(List.of("saffron"), 10));
+    }
+
+    @Test
+    void rareTermsOutweighCommonOnes() {
+        InvertedIndex index = new InvertedIndex();
+        index.put("common", Map.of("salt", 1, "filler", 1));
+        index.put("rare", Map.of("saffron", 1, "filler", 1));
+        for (int i = 0; i < 10; i++) {
+            index.put("other-" + i, Map.of("salt", 1, "filler", 1));
+        }
+
+        assertEquals("rare", index.search(List.of("salt", "saffron"), 1).get(0).getKey());
+    }
+
+    @Test
+    void higherTermFrequencyAndShorterDocumentsScoreHigher() {
+        InvertedIndex index = new InvertedIndex();
+        index.put("once", Map.of("garlic", 1, "onion", 2));
+        index.put("thrice", Map.of("garlic", 3));
+        index.put("long", Map.of("garlic", 1, "onion", 2, "pepper", 5));
+        index.put("unrelated", Map.of("onion", 1));
+
+        assertEquals(List.of("thrice", "once", "long"), keys(index.search(List.of("garlic"), 10)));
+    }
+
+    @Test
+    void matchingMoreTermsRanksFirstAndLimitIsHonoured() {
+        InvertedIndex index = new InvertedIndex();
+        index.put("both", Map.of("pasta", 1, "pesto", 1));
+        index.put("pasta", Map.of("pasta", 1, "sauce", 1));
+        index.put("pesto", Map.of("pesto", 1, "sauce", 1));
+
+        List<InvertedIndex.Hit> hits = index.search(List.of("pasta", "pesto"), 2);
+        assertEquals(2, hits.size());
+        assertEquals("both", hits.get(0).getKey());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    void putReplacesAndRemoveDrops() {
+        InvertedIndex index = new InvertedIndex();
+        index.put("a", Map.of("soup", 1));
+        index.put("a", Map.of("stew", 1));
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(), index.search(List.of("soup"), 10));
+        assertEquals(List.of("a"), keys(index.search(List.of("stew"), 10)));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertEquals(0, index.size());
+        assertEquals(List.of(), index.search(List.of("stew"), 10));
+    }
+
+    @Test
+    void compactionKeepsResultsAndMatchesAFreshIndex() {
+        InvertedIndex index = new InvertedIndex();
+        InvertedIndex fresh = new InvertedIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.put("doc-" + i, document(i));
+        }
+        // Removing two thirds crosses the tombstone threshold and compacts
+        for (int i = 0; i < 3000; i++) {
+            if (i % 3 != 0) {
+                index.remove("doc-" + i);
+            } else {
+                fresh.put("doc-" + i, document(i));
+            }
+        }
+
+        assertEquals(1000, index.size());
+        List<InvertedIndex.Hit> compacted = index.search(List.of("herb", "spice"), 20);
+        List<InvertedIndex.Hit> expected = fresh.search(List.of("herb", "spice"), 20);
+        assertEquals(keys(expected), keys(compacted));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getScore(), compacted.get(i).getScore(), 1e-5);
+        }
+    }
+
+    @Test
+    void snapshotRoundTripGivesTheSameHits() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 0; i < 50; i++) {
+            index.put("doc-" + i, document(i));
+        }
+        index.remove("doc-7");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        InvertedIndex restored = InvertedIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(index.size(), restored.size());
+        assertEquals(keys(index.search(List.of("herb", "spice"), 50)), keys(restored.search(List.of("herb", "spice"), 50)));
+    }
+
+    private static Map<String, Integer> document(int i) {
+        return Map.of("herb", 1 + i % 4, "spice", 1 + i % 7, "filler", 1 + i % 5);
+    }
+
+    private static List<String> keys(List<InvertedIndex.Hit> hits) {
+        return hits.stream().map(InvertedIndex.Hit::getKey).toList();
+    }
+}
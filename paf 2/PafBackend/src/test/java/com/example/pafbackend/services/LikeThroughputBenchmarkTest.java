@@ -0,0 +1,112 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.Like;
+import com.example.pafbackend.models.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Sustained likes per second from many threads, synchronous against write-behind with and without the journal.
+// Write-behind runs are timed until their last flush is in Mongo; run with -Dbenchmarks=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class LikeThroughputBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int LIKES_PER_THREAD = 2_000;
+    private static final int POSTS = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    private final String prefix = "benchmark-" + UUID.randomUUID() + "-";
+    private final List<Path> journalDirs = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        mongoTemplate.remove(Query.query(Criteria.where("postId").regex("^" + prefix)), Like.class);
+        mongoTemplate.remove(Query.query(Criteria.where("aggregateId").regex("^" + prefix)), OutboxEvent.class);
+        for (Path dir : journalDirs) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void likesPerSecond() throws Exception {
+        measure("synchronous", buffer(false, false));
+        measure("write-behind", buffer(true, false));
+        measure("write-behind with journal", buffer(true, true));
+    }
+
+    private void measure(String mode, LikeWriteBuffer buffer) throws Exception {
+        LikeService likeService = new LikeService(mongoTemplate, postCounterService, outboxService, buffer);
+        String run = prefix + mode.replace(' ', '-') + "-";
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                String userId = run + "user-" + thread;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                        // Every (post, user) pair is new, so each like is one insert
+                        likeService.setLiked(run + "post-" + (i % POSTS), userId + "-" + (i / POSTS), true);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Drains whatever is still buffered
+        buffer.shutdown();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        int likes = THREADS * LIKES_PER_THREAD;
+        log.info("{}: {} likes from {} threads in {} s, {} likes/s", mode, likes, THREADS,
+                String.format("%.2f", seconds), String.format("%.0f", likes / seconds));
+        assertEquals(likes, mongoTemplate.count(Query.query(Criteria.where("postId").regex("^" + run)), Like.class));
+    }
+
+    private LikeWriteBuffer buffer(boolean writeBehind, boolean journal) throws IOException {
+        Path journalDir = Files.createTempDirectory("likes-journal-");
+        journalDirs.add(journalDir);
+        LikeWriteBuffer buffer = new LikeWriteBuffer(mongoTemplate, postCounterService, outboxService,
+                writeBehind, 5000, 16, journal, false, journalDir.toString());
+        buffer.init();
+        return buffer;
+    }
+}
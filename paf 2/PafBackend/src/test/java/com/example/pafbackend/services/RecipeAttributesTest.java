@@ -0,0 +1,64 @@
+package com.example.pafbackend.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecipeAttributesTest {
+
+    @Test
+    void parsesPlainAmountsAndUnits() {
+        assertEquals(45, RecipeAttributes.parseMinutes("45"));
+        assertEquals(30, RecipeAttributes.parseMinutes("30 mins"));
+        assertEquals(120, RecipeAttributes.parseMinutes("2 Hours"));
+        assertEquals(75, RecipeAttributes.parseMinutes("1 hour 15 minutes"));
+        assertEquals(90, RecipeAttributes.parseMinutes("1.5 hours"));
+        assertEquals(90, RecipeAttributes.parseMinutes("1,5 hrs"));
+    }
+
+    @Test
+    void rangesCountAsTheirUpperBound() {
+        assertEquals(30, RecipeAttributes.parseMinutes("20-30 min"));
+        assertEquals(25, RecipeAttributes.parseMinutes("20 to 25 minutes"));
+        assertEquals(25, RecipeAttributes.parseMinutes("20\u201325"));
+        assertEquals(180, RecipeAttributes.parseMinutes("2-3 hours"));
+    }
+
+    @Test
+    void parsesCompactIsoAndSpelledOutForms() {
+        assertEquals(90, RecipeAttributes.parseMinutes("1h30"));
+        assertEquals(40, RecipeAttributes.parseMinutes("PT40M"));
+        assertEquals(80, RecipeAttributes.parseMinutes("PT1H20M"));
+        assertEquals(30, RecipeAttributes.parseMinutes("half an hour"));
+        assertEquals(60, RecipeAttributes.parseMinutes("about an hour"));
+    }
+
+    @Test
+    void rejectsEmptyUnparseableAndNonPositiveAndClampsLongTimes() {
+        assertNull(RecipeAttributes.parseMinutes(null));
+        assertNull(RecipeAttributes.parseMinutes("  "));
+        assertNull(RecipeAttributes.parseMinutes("overnight"));
+        assertNull(RecipeAttributes.parseMinutes("0 min"));
+        assertEquals(7 * 24 * 60, RecipeAttributes.parseMinutes("10000 hours"));
+    }
+
+    @Test
+    void normalizesDifficulty() {
+        assertEquals(RecipeAttributes.EASY, RecipeAttributes.normalizeDifficulty("Easy"));
+        assertEquals(RecipeAttributes.EASY, RecipeAttributes.normalizeDifficulty("beginner friendly"));
+        assertEquals(RecipeAttributes.EASY, RecipeAttributes.normalizeDifficulty(" low "));
+        assertEquals(RecipeAttributes.MEDIUM, RecipeAttributes.normalizeDifficulty("Intermediate"));
+        assertEquals(RecipeAttributes.MEDIUM, RecipeAttributes.normalizeDifficulty("normal"));
+        assertEquals(RecipeAttributes.HARD, RecipeAttributes.normalizeDifficulty("ADVANCED"));
+        assertEquals(RecipeAttributes.HARD, RecipeAttributes.normalizeDifficulty("high"));
+    }
+
+    @Test
+    void unknownDifficultyIsNull() {
+        assertNull(RecipeAttributes.normalizeDifficulty(null));
+        assertNull(RecipeAttributes.normalizeDifficulty(""));
+        assertNull(RecipeAttributes.normalizeDifficulty("lowish"));
+        assertNull(RecipeAttributes.normalizeDifficulty("spicy"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.pafbackend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SocialGraphTest {
+
+    @Test
+    void suggestsFriendsOfFriendsRankedByMutualFriends() {
+        SocialGraph graph = loaded(1000,
+                "me", "a,b,c",
+                "a", "me,x,y",
+                "b", "me,x,y,z",
+                "c", "me,x,b");
+
+        List<SocialGraph.Suggestion> suggestions = graph.suggestions("me", 10, 1000);
+
+        assertEquals(List.of("x", "y", "z"), ids(suggestions));
+        assertEquals(List.of(3, 2, 1), counts(suggestions));
+        assertEquals(List.of("x"), ids(graph.suggestions("me", 1, 1000)));
+        assertEquals(List.of(), graph.suggestions("nobody", 10, 1000));
+    }
+
+    @Test
+    void tiesRankByUserOrderAndScanIsBounded() {
+        SocialGraph graph = loaded(1000,
+                "me", "a",
+                "a", "me,p,q,r");
+
+        assertEquals(List.of("p", "q", "r"), ids(graph.suggestions("me", 10, 1000)));
+        assertEquals(List.of("p"), ids(graph.suggestions("me", 10, 1)));
+    }
+
+    @Test
+    void mutualFriendsIntersectsBothRows() {
+        SocialGraph graph = loaded(1000,
+                "a", "b,c,d,e",
+                "f", "e,c,g");
+
+        assertEquals(List.of("c", "e"), graph.mutualFriends("a", "f"));
+        assertEquals(List.of(), graph.mutualFriends("a", "unknown"));
+    }
+
+    @Test
+    void overlayChangesAreVisibleBeforeAndAfterCompaction() {
+        SocialGraph graph = loaded(1000,
+                "me", "a",
+                "a", "me,x");
+
+        graph.addEdge("me", "b");
+        graph.addEdge("b", "me");
+        graph.addEdge("b", "x");
+        graph.addEdge("b", "newcomer");
+        graph.removeEdge("a", "x");
+
+        assertEquals(List.of("x", "newcomer"), ids(graph.suggestions("me", 10, 1000)));
+        assertEquals(List.of("me"), graph.mutualFriends("a", "b"));
+        assertEquals(6, graph.edgeCount());
+
+        graph.finishLoading();
+
+        assertEquals(List.of("x", "newcomer"), ids(graph.suggestions("me", 10, 1000)));
+        assertEquals(List.of("me"), graph.mutualFriends("a", "b"));
+        assertEquals(6, graph.edgeCount());
+        assertEquals(5, graph.userCount());
+    }
+
+    @Test
+    void compactsOnceTheOverlayFillsUp() {
+        SocialGraph graph = loaded(4, "hub", "");
+
+        for (int i = 0; i < 20; i++) {
+            graph.addEdge("hub", "user-" + i);
+            graph.addEdge("user-" + i, "hub");
+        }
+        for (int i = 0; i < 20; i += 2) {
+            graph.removeEdge("hub", "user-" + i);
+        }
+
+        assertEquals(30, graph.edgeCount());
+        assertEquals(21, graph.userCount());
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i < 20; i += 2) {
+            expected.add("user-" + i);
+        }
+        assertEquals(List.of("hub"), graph.mutualFriends("user-1", "user-3"));
+        assertEquals(expected, graph.suggestions("user-0", 20, 1000).stream()
+                .map(SocialGraph.Suggestion::getUserId).toList());
+    }
+
+    @Test
+    void setFriendsReplacesTheRowAndIgnoresDuplicates() {
+        SocialGraph graph = loaded(1000, "me", "a,b,a");
+
+        assertEquals(2, graph.edgeCount());
+        graph.setFriends("me", List.of("c"));
+        assertEquals(1, graph.edgeCount());
+        graph.setFriends("d", List.of("c", "a"));
+        assertEquals(List.of("c"), graph.mutualFriends("me", "d"));
+    }
+
+    // Pairs of user id and comma-separated friend ids, loaded before finishLoading()
+    private static SocialGraph loaded(int compactThreshold, String... rows) {
+        SocialGraph graph = new SocialGraph(compactThreshold);
+        for (int i = 0; i < rows.length; i += 2) {
+            List<String> friends = rows[i + 1].isEmpty() ? List.of() : Arrays.asList(rows[i + 1].split(","));
+            graph.setFriends(rows[i], friends);
+        }
+        graph.finishLoading();
+        return graph;
+    }
+
+    private static List<String> ids(List<SocialGraph.Suggestion> suggestions) {
+        return suggestions.stream().map(SocialGraph.Suggestion::getUserId).toList();
+    }
+
+    private static List<Integer> counts(List<SocialGraph.Suggestion> suggestions) {
+        return suggestions.stream().map(SocialGraph.Suggestion::getMutualFriends).toList();
+    }
+}
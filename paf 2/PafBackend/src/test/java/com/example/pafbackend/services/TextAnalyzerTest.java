@@ -0,0 +1,42 @@
+package com.example.pafbackend.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextAnalyzerTest {
+
+    @Test
+    void lowerCasesSplitsAndDropsStopWordsAndSingleCharacters() {
+        assertEquals(List.of("tomato", "basil", "30", "minut"),
+                TextAnalyzer.analyze("The Tomato & a BASIL, in 30 minutes!"));
+    }
+
+    @Test
+    void inflectionsShareAStem() {
+        assertEquals(TextAnalyzer.analyze("bake"), TextAnalyzer.analyze("baked"));
+        assertEquals(TextAnalyzer.analyze("bake"), TextAnalyzer.analyze("baking"));
+        assertEquals(TextAnalyzer.analyze("tomato"), TextAnalyzer.analyze("tomatoes"));
+        assertEquals(TextAnalyzer.analyze("berry"), TextAnalyzer.analyze("berries"));
+        assertEquals(TextAnalyzer.analyze("dish"), TextAnalyzer.analyze("dishes"));
+        assertEquals(TextAnalyzer.analyze("chop"), TextAnalyzer.analyze("chopped"));
+    }
+
+    @Test
+    void leavesShortWordsNumbersAndDoubleLettersAlone() {
+        assertEquals("egg", TextAnalyzer.stem("egg"));
+        assertEquals("350s", TextAnalyzer.stem("350s"));
+        assertEquals("glass", TextAnalyzer.stem("glass"));
+        assertEquals("couscous", TextAnalyzer.stem("couscous"));
+        assertEquals("fill", TextAnalyzer.stem("filling"));
+    }
+
+    @Test
+    void emptyInputHasNoTerms() {
+        assertEquals(List.of(), TextAnalyzer.analyze(null));
+        assertEquals(List.of(), TextAnalyzer.analyze(""));
+        assertEquals(List.of(), TextAnalyzer.analyze("the and of ..."));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.pafbackend.services;
+
+import com.example.pafbackend.models.ConnectionEdge;
+import com.example.pafbackend.models.UserConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Hammers one user's friend list from many threads; every edge must end up stored exactly once, in both directions.
+// Writes to the configured database, so it only runs with -Dintegration=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "integration", matches = "true")
+class UserConnectionServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private UserConnectionService userConnectionService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final String prefix = "concurrency-test-" + UUID.randomUUID() + "-";
+    private final String userId = prefix + "user";
+    private final String sharedFriendId = prefix + "shared";
+
+    @BeforeEach
+    void createIndex() {
+        // Normally built in the background after startup; the test needs it before the first upsert
+        userConnectionService.createUniqueIndex();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(Query.query(Criteria.where("userId").regex("^" + prefix)), UserConnection.class);
+        // addFriends also writes an edge per direction
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                Criteria.where("userId").regex("^" + prefix),
+                Criteria.where("friendId").regex("^" + prefix))), ConnectionEdge.class);
+    }
+
+    @Test
+    void concurrentAddsNeitherLoseNorDuplicateFriends() throws Exception {
+        runConcurrently(thread -> () -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                // Every thread re-adds its own friend and the shared one, so each edge is written many times at once
+                userConnectionService.addFriends(userId, List.of(friendOf(thread), sharedFriendId));
+            }
+            return null;
+        });
+
+        assertEquals(1, connectionsOf(userId).size(), "one document per user");
+        List<String> friends = connectionsOf(userId).get(0).getFriendIds();
+        assertEquals(THREADS + 1, friends.size(), "no duplicate friend ids");
+        Set<String> expected = new HashSet<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            expected.add(friendOf(thread));
+        }
+        expected.add(sharedFriendId);
+        assertEquals(expected, new HashSet<>(friends), "no lost friend ids");
+
+        for (String friendId : expected) {
+            List<UserConnection> reverse = connectionsOf(friendId);
+            assertEquals(1, reverse.size(), "one document for " + friendId);
+            assertEquals(List.of(userId), reverse.get(0).getFriendIds(), "reverse edge stored once for " + friendId);
+        }
+    }
+
+    @Test
+    void concurrentUnfriendsOnlyRemoveTheirOwnEdge() throws Exception {
+        List<String> everyone = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            everyone.add(friendOf(thread));
+        }
+        everyone.add(sharedFriendId);
+        userConnectionService.addFriends(userId, everyone);
+
+        runConcurrently(thread -> () -> {
+            assertTrue(userConnectionService.unfriend(userId, friendOf(thread)));
+            // Concurrent adds of an unrelated edge must survive the pulls
+            userConnectionService.addFriends(userId, List.of(sharedFriendId));
+            return null;
+        });
+
+        assertEquals(List.of(sharedFriendId), connectionsOf(userId).get(0).getFriendIds());
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertTrue(connectionsOf(friendOf(thread)).get(0).getFriendIds().isEmpty());
+        }
+        assertEquals(Set.of(sharedFriendId),
+                userConnectionService.friendsAmong(userId, List.of(sharedFriendId, friendOf(0), friendOf(1))));
+    }
+
+    private interface ThreadTask {
+        Callable<Void> forThread(int thread);
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(task.forThread(thread)));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String friendOf(int thread) {
+        return prefix + "friend-" + thread;
+    }
+
+    private List<UserConnection> connectionsOf(String id) {
+        return mongoTemplate.find(Query.query(Criteria.where("userId").is(id)), UserConnection.class);
+    }
+}
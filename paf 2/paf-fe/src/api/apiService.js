@@ -148,7 +148,7 @@ export const storyStatusService = {
   createUpdate: (updateData) => api.post('/api/workoutStatusUpdates', updateData),
   getAllUpdates: () => api.get('/api/workoutStatusUpdates'),
   getUpdatesByUserId: (userId) => api.get(`/api/workoutStatusUpdates/${userId}`),
-  updateUpdate: (id, updateData) => api.put(`/api/workoutStatusUpdates/${id}`, updateData),
+  updateUpdate: (id, updateData, userId) => api.put(`/api/workoutStatusUpdates/${id}?userId=${userId}`, updateData),
   deleteUpdate: (id) => api.delete(`/api/workoutStatusUpdates/${id}`),
 };
 
@@ -163,7 +163,7 @@ export const connectionService = {
 export const bookmarkService = {
   getUserBookmarks: (userId) => api.get(`/api/bookmarks/${userId}`),
   createBookmark: (bookmarkData) => api.post('/api/bookmarks', bookmarkData),
-  updateBookmark: (id, bookmarkData) => api.put(`/api/bookmarks/${id}`, bookmarkData),
+  updateBookmark: (id, bookmarkData, userId) => api.put(`/api/bookmarks/${id}?userId=${userId}`, bookmarkData),
   deleteBookmark: (id) => api.delete(`/api/bookmarks/${id}`),
 };
 
@@ -175,7 +175,10 @@ export const groupService = {
   getGroupsByCreator: (userId) => api.get(`/api/groups/creator/${userId}`),
   getGroupsByMember: (userId) => api.get(`/api/groups/member/${userId}`),
   createGroup: (groupData) => api.post('/api/groups', groupData),
-  updateGroup: (id, groupData) => api.put(`/api/groups/${id}`, groupData),
+  updateGroup: (id, groupData, userId) => api.put(`/api/groups/${id}?userId=${userId}`, groupData),
+  getGroupMembers: (id, params) => api.get(`/api/groups/${id}/members`, { params }),
+  joinGroup: (id, userId) => api.post(`/api/groups/${id}/members/${userId}`),
+  leaveGroup: (id, userId) => api.delete(`/api/groups/${id}/members/${userId}`),
   updateGroupMembers: (id, memberIds) => api.put(`/api/groups/${id}/members`, memberIds),
   updateGroupAdmins: (id, adminIds) => api.put(`/api/groups/${id}/admins`, adminIds),
   deleteGroup: (id) => api.delete(`/api/groups/${id}`),
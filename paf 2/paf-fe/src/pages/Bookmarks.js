@@ -90,7 +90,7 @@ const Bookmarks = () => {
       
       if (editingBookmark) {
         // Update existing bookmark
-        await bookmarkService.updateBookmark(editingBookmark.id, bookmarkData);
+        await bookmarkService.updateBookmark(editingBookmark.id, bookmarkData, currentUser.id);
       } else {
         // Create new bookmark
         await bookmarkService.createBookmark(bookmarkData);
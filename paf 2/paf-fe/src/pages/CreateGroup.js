@@ -17,9 +17,8 @@ const CreateGroup = () => {
     isPublic: true,
     tags: ['cooking'],
     rules: ['Be respectful to all members'],
-    creatorId: currentUser.id,
-    memberIds: [currentUser.id],
-    adminIds: [currentUser.id]
+    // The server makes the creator the first member and an admin
+    creatorId: currentUser.id
   });
   const [error, setError] = useState(null);
   const [isSubmitting, setIsSubmitting] = useState(false);
@@ -15,6 +15,8 @@ import {
   FaUserCircle  // Added this import
 } from 'react-icons/fa';
 
+const MEMBERS_PAGE_SIZE = 50;
+
 const GroupDetail = () => {
   const { groupId } = useParams();
   const { currentUser } = useContext(AuthContext);
@@ -29,11 +31,14 @@ const GroupDetail = () => {
   const [newPost, setNewPost] = useState({ content: '', mediaUrl: '', mediaType: '' });
   const [submitting, setSubmitting] = useState(false);
   const [showMembersModal, setShowMembersModal] = useState(false);
+  // Members come a page at a time from /members; adminIds is the full (short) admin list
+  const [members, setMembers] = useState([]);
+  const [membersCursor, setMembersCursor] = useState(null);
+  const [adminIds, setAdminIds] = useState([]);
+  const [isMember, setIsMember] = useState(false);
   
-  // Check if current user is a member
-  const isMember = group?.memberIds?.includes(currentUser.id);
   // Check if current user is an admin
-  const isAdmin = group?.adminIds?.includes(currentUser.id);
+  const isAdmin = adminIds.includes(currentUser.id);
   // Check if current user is the creator
   const isCreator = group?.creatorId === currentUser.id;
 
@@ -54,10 +59,21 @@ const GroupDetail = () => {
       const postsResponse = await groupPostService.getPostsByGroupId(groupId);
       setPosts(postsResponse.data);
       
+      // Fetch the first page of members, the admins, and whether the current user belongs
+      const [membersResponse, adminsResponse, myGroupsResponse] = await Promise.all([
+        groupService.getGroupMembers(groupId, { limit: MEMBERS_PAGE_SIZE }),
+        groupService.getGroupMembers(groupId, { role: 'admin', limit: 200 }),
+        groupService.getGroupsByMember(currentUser.id)
+      ]);
+      setMembers(membersResponse.data.items);
+      setMembersCursor(membersResponse.data.nextCursor);
+      setAdminIds(adminsResponse.data.items.map(membership => membership.userId));
+      setIsMember(myGroupsResponse.data.some(memberGroup => memberGroup.id === groupId));
+      
       // Get all user IDs from group and posts
       const userIds = [
         groupResponse.data.creatorId,
-        ...groupResponse.data.memberIds,
+        ...membersResponse.data.items.map(membership => membership.userId),
         ...postsResponse.data.map(post => post.userId)
       ];
       
@@ -72,6 +88,19 @@ const GroupDetail = () => {
     }
   };
 
+  const fetchMoreMembers = async () => {
+    if (!membersCursor) return;
+    
+    try {
+      const response = await groupService.getGroupMembers(groupId, { cursor: membersCursor, limit: MEMBERS_PAGE_SIZE });
+      setMembers(prev => [...prev, ...response.data.items]);
+      setMembersCursor(response.data.nextCursor);
+      await fetchUsers(response.data.items.map(membership => membership.userId));
+    } catch (err) {
+      console.error('Error fetching group members:', err);
+    }
+  };
+
   const fetchUsers = async (userIds) => {
     const usersObject = { ...users };
     
@@ -94,13 +123,14 @@ const GroupDetail = () => {
     if (!group) return;
     
     try {
-      const updatedMembers = [...group.memberIds, currentUser.id];
-      await groupService.updateGroupMembers(groupId, updatedMembers);
+      await groupService.joinGroup(groupId, currentUser.id);
       
       // Update local state
+      setIsMember(true);
+      setMembers(prev => [...prev, { groupId, userId: currentUser.id, role: 'member' }]);
       setGroup(prev => ({
         ...prev,
-        memberIds: updatedMembers
+        memberCount: (prev.memberCount || 0) + 1
       }));
     } catch (err) {
       console.error('Error joining group:', err);
@@ -116,20 +146,15 @@ const GroupDetail = () => {
     }
     
     try {
-      const updatedMembers = group.memberIds.filter(id => id !== currentUser.id);
-      const updatedAdmins = group.adminIds.filter(id => id !== currentUser.id);
-      
-      await groupService.updateGroupMembers(groupId, updatedMembers);
-      
-      if (isAdmin) {
-        await groupService.updateGroupAdmins(groupId, updatedAdmins);
-      }
+      await groupService.leaveGroup(groupId, currentUser.id);
       
       // Update local state
+      setIsMember(false);
+      setMembers(prev => prev.filter(membership => membership.userId !== currentUser.id));
+      setAdminIds(prev => prev.filter(id => id !== currentUser.id));
       setGroup(prev => ({
         ...prev,
-        memberIds: updatedMembers,
-        adminIds: updatedAdmins
+        memberCount: Math.max(0, (prev.memberCount || 0) - 1)
       }));
     } catch (err) {
       console.error('Error leaving group:', err);
@@ -259,7 +284,7 @@ const GroupDetail = () => {
           <div className="d-flex justify-content-between align-items-start mb-3">
             <div>
               <p className="text-muted">
-                Created by {users[group.creatorId]?.username || 'Unknown User'} • {group.memberIds?.length || 0} members
+                Created by {users[group.creatorId]?.username || 'Unknown User'} • {group.memberCount || 0} members
               </p>
               {group.tags && group.tags.length > 0 && (
                 <div className="mb-3">
@@ -464,7 +489,7 @@ const GroupDetail = () => {
               {/* Members Tab */}
               <Tab.Pane eventKey="members">
                 <div className="d-flex justify-content-between mb-4">
-                  <h4>Members ({group.memberIds?.length || 0})</h4>
+                  <h4>Members ({group.memberCount || 0})</h4>
                   <Button 
                     variant="outline-primary" 
                     size="sm"
@@ -475,7 +500,7 @@ const GroupDetail = () => {
                 </div>
                 
                 <Row>
-                  {group.memberIds?.slice(0, 8).map(memberId => (
+                  {members.slice(0, 8).map(({ userId: memberId }) => (
                     <Col md={3} sm={6} className="mb-4" key={memberId}>
                       <Card className="text-center p-3">
                         <FaUserCircle size={60} className="mx-auto text-secondary mb-2" />
@@ -483,7 +508,7 @@ const GroupDetail = () => {
                         {memberId === group.creatorId && (
                           <Badge bg="primary" className="mx-auto">Creator</Badge>
                         )}
-                        {group.adminIds?.includes(memberId) && memberId !== group.creatorId && (
+                        {adminIds.includes(memberId) && memberId !== group.creatorId && (
                           <Badge bg="info" className="mx-auto">Admin</Badge>
                         )}
                       </Card>
@@ -491,7 +516,7 @@ const GroupDetail = () => {
                   ))}
                 </Row>
                 
-                {group.memberIds?.length > 8 && (
+                {(members.length > 8 || membersCursor) && (
                   <div className="text-center mt-3">
                     <Button 
                       variant="outline-secondary"
@@ -529,7 +554,7 @@ const GroupDetail = () => {
                       </Col>
                       <Col md={6}>
                         <p><strong>Visibility:</strong> {group.isPublic ? 'Public' : 'Private'}</p>
-                        <p><strong>Members:</strong> {group.memberIds?.length || 0}</p>
+                        <p><strong>Members:</strong> {group.memberCount || 0}</p>
                       </Col>
                     </Row>
                   </Card.Body>
@@ -551,7 +576,7 @@ const GroupDetail = () => {
         </Modal.Header>
         <Modal.Body>
           <Row>
-            {group.memberIds?.map(memberId => (
+            {members.map(({ userId: memberId }) => (
               <Col md={4} sm={6} className="mb-4" key={memberId}>
                 <Card className="text-center p-3">
                   <FaUserCircle size={60} className="mx-auto text-secondary mb-2" />
@@ -560,7 +585,7 @@ const GroupDetail = () => {
                     {memberId === group.creatorId && (
                       <Badge bg="primary" className="mx-1">Creator</Badge>
                     )}
-                    {group.adminIds?.includes(memberId) && memberId !== group.creatorId && (
+                    {adminIds.includes(memberId) && memberId !== group.creatorId && (
                       <Badge bg="info" className="mx-1">Admin</Badge>
                     )}
                   </div>
@@ -585,6 +610,13 @@ const GroupDetail = () => {
               </Col>
             ))}
           </Row>
+          {membersCursor && (
+            <div className="text-center">
+              <Button variant="outline-secondary" onClick={fetchMoreMembers}>
+                Load More
+              </Button>
+            </div>
+          )}
         </Modal.Body>
       </Modal>
     </Container>
@@ -140,7 +140,7 @@ const Groups = () => {
                     </Card.Text>
                     <div className="mb-3">
                       <small className="text-muted">
-                        {group.memberIds?.length || 0} members
+                        {group.memberCount || 0} members
                       </small>
                     </div>
                     {group.tags && group.tags.length > 0 && (
@@ -212,7 +212,7 @@ const Groups = () => {
                   </Card.Text>
                   <div className="mb-3">
                     <small className="text-muted">
-                      {group.memberIds?.length || 0} members
+                      {group.memberCount || 0} members
                     </small>
                   </div>
                   {group.tags && group.tags.length > 0 && (